@@ -0,0 +1,258 @@
+package com.github.frensi.notchess;
+
+/**
+ * Precomputed attack tables for every piece. The knight, king and pawn
+ * attacks are stored per square. The rook and bishop attacks use magic
+ * bitboards: the blockers on the rays of the piece are multiplied by a magic
+ * number to get the index of the attacks in a table. The tables are filled
+ * once when the class is loaded.
+ *
+ * Squares use the same numbering as BoardState (row * 8 + col).
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public final class AttackTables {
+
+    // The squares attacked by a knight on each square
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    // The squares attacked by a king on each square
+    public static final long[] KING_ATTACKS = new long[64];
+    // The squares where a pawn can capture, indexed by color and square
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // The squares on the rays of the rook that can block it (without the edges)
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final long[][] ROOK_TABLE = new long[64][];
+
+    // The squares on the rays of the bishop that can block it (without the edges)
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] BISHOP_TABLE = new long[64][];
+
+    // The magic numbers of each square, found with a random search
+    private static final long[] ROOK_MAGICS = {
+        0x008000908064C000L, 0x0040200040001000L, 0x0180100080A0010AL, 0x8880041000800800L,
+        0x1200100201200804L, 0x0200020004011008L, 0x2180010000800600L, 0x0200005088210204L,
+        0x0000800080204001L, 0x1000804000802001L, 0x8240801000200080L, 0x8611001004200900L,
+        0x008180800C001800L, 0x0100800200800400L, 0x0A02000102000408L, 0x8020802300104280L,
+        0x0080004000402000L, 0xE010104000402000L, 0x0800808010002000L, 0xA280210008100100L,
+        0x0001818014000800L, 0xA002010100080400L, 0x0008040088020130L, 0x0001020004048845L,
+        0x0081826280004004L, 0x2020810900284000L, 0x0200100080802000L, 0x0200080080100080L,
+        0x8083080100100500L, 0x4406000901000400L, 0x0005020080800100L, 0x0090204200008114L,
+        0x0010400094800420L, 0x0900804000802002L, 0x0201001841002000L, 0x4100080080801000L,
+        0x4540040080800800L, 0x0000800400800200L, 0x9281800100808200L, 0x8004048102000854L,
+        0x4420802040008006L, 0x0880500020004002L, 0x0801200241050010L, 0x8400080010008080L,
+        0x0008000500090010L, 0x0082009084020008L, 0x4012000108020004L, 0x9000104D08860004L,
+        0x2004204114800100L, 0x0148802112400300L, 0x0202842000100880L, 0x001B080080900080L,
+        0x001A002008100600L, 0x0004008004020080L, 0x5181000600040300L, 0x0000044401128A00L,
+        0x8044110480002441L, 0x1023012082044112L, 0x00804080200A0012L, 0x000420310A004A42L,
+        0x0023001004020801L, 0x0882001008040102L, 0x000230088118020CL, 0x0000019025040042L
+    };
+    private static final long[] BISHOP_MAGICS = {
+        0x1010220204082A00L, 0x80E0020202002804L, 0x2008480104200020L, 0x000220920280002DL,
+        0x32040421000B0284L, 0x1002080404000400L, 0x0004160892080040L, 0x2203024206204201L,
+        0x0002404264010200L, 0x1120908408428124L, 0xB100424403002280L, 0x240008060440C288L,
+        0x2040040420490400L, 0x0100620210040022L, 0x0400084104202028L, 0x0010050080908820L,
+        0x0C90A04490824802L, 0x000200A008210130L, 0x0C08001000204010L, 0x0008000186014480L,
+        0x0601044820080021L, 0x0002000101013100L, 0x1400A08108080204L, 0x0250401104485410L,
+        0x4820240810142843L, 0x0009142A20182200L, 0x0848140048440020L, 0x2020120000400440L,
+        0x0108840200802003L, 0x0009070082009492L, 0x020C0C0038424245L, 0xCA44005808210410L,
+        0x8011212000500404L, 0x2028840510101008L, 0x0004042A00041400L, 0x0624020080980080L,
+        0x1820410040840040L, 0x2201004202050100L, 0x402A088A24040224L, 0x0242061040002400L,
+        0x90020202400821A0L, 0x00C9009004E01002L, 0x58C2060202023100L, 0x0000012214040800L,
+        0x0210846810100200L, 0x0004208081010200L, 0x01A4108404442100L, 0x8054082C80280106L,
+        0x0004144904104208L, 0x00324C0A11104000L, 0x1000020231040100L, 0x2080001042020004L,
+        0x0544021020288104L, 0x1103501408083020L, 0x4010451004960002L, 0x003010091C44902CL,
+        0x0102402884202000L, 0x0480804C00841086L, 0x04602C8602210400L, 0x0000004000420200L,
+        0x0040000020442C18L, 0x4483804089094100L, 0x80000B0248020400L, 0x0045010808008680L
+    };
+
+    // The directions of the pieces as {row, col} steps
+    private static final int[][] KNIGHT_STEPS = {{2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {-1, 2}, {1, -2}, {-1, -2}};
+    private static final int[][] KING_STEPS = {{1, 1}, {1, 0}, {1, -1}, {0, 1}, {0, -1}, {-1, 1}, {-1, 0}, {-1, -1}};
+    private static final int[][] ROOK_STEPS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_STEPS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            int row = square / 8;
+            int col = square % 8;
+            KNIGHT_ATTACKS[square] = stepAttacks(row, col, KNIGHT_STEPS);
+            KING_ATTACKS[square] = stepAttacks(row, col, KING_STEPS);
+            // White pawns move up the matrix (to lower rows), black pawns down
+            PAWN_ATTACKS[BoardState.WHITE][square] = stepAttacks(row, col, new int[][] {{-1, 1}, {-1, -1}});
+            PAWN_ATTACKS[BoardState.BLACK][square] = stepAttacks(row, col, new int[][] {{1, 1}, {1, -1}});
+
+            ROOK_MASKS[square] = blockerMask(row, col, ROOK_STEPS);
+            BISHOP_MASKS[square] = blockerMask(row, col, BISHOP_STEPS);
+            initMagic(square, ROOK_STEPS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_TABLE);
+            initMagic(square, BISHOP_STEPS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_TABLE);
+        }
+    }
+
+    /**
+     * No objects of this class are needed
+     */
+    private AttackTables() {
+
+    }
+
+    /**
+     * Returns the squares attacked by a rook
+     *
+     * @param square The square of the rook
+     * @param occupied The squares occupied by any piece
+     * @return The bitboard of the attacked squares
+     */
+    public static long rookAttacks(int square, long occupied) {
+        int index = (int)(((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square]);
+        return ROOK_TABLE[square][index];
+    }
+
+    /**
+     * Returns the squares attacked by a bishop
+     *
+     * @param square The square of the bishop
+     * @param occupied The squares occupied by any piece
+     * @return The bitboard of the attacked squares
+     */
+    public static long bishopAttacks(int square, long occupied) {
+        int index = (int)(((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square]);
+        return BISHOP_TABLE[square][index];
+    }
+
+    /**
+     * Returns the squares attacked by a queen
+     *
+     * @param square The square of the queen
+     * @param occupied The squares occupied by any piece
+     * @return The bitboard of the attacked squares
+     */
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    /**
+     * Returns the squares attacked by a piece. For pawns these are the squares
+     * where the pawn captures, not where it moves.
+     *
+     * @param type The type of the piece
+     * @param color The color of the piece (WHITE or BLACK)
+     * @param square The square of the piece
+     * @param occupied The squares occupied by any piece
+     * @return The bitboard of the attacked squares
+     */
+    public static long attacks(int type, int color, int square, long occupied) {
+        switch (type) {
+            case BoardState.PAWN:
+                return PAWN_ATTACKS[color][square];
+            case BoardState.KNIGHT:
+                return KNIGHT_ATTACKS[square];
+            case BoardState.BISHOP:
+                return bishopAttacks(square, occupied);
+            case BoardState.ROOK:
+                return rookAttacks(square, occupied);
+            case BoardState.QUEEN:
+                return queenAttacks(square, occupied);
+            default:
+                return KING_ATTACKS[square];
+        }
+    }
+
+    /**
+     * Returns the squares reached with one step in each direction
+     *
+     * @param row The row of the piece
+     * @param col The column of the piece
+     * @param steps The directions of the piece
+     * @return The bitboard of the squares
+     */
+    private static long stepAttacks(int row, int col, int[][] steps) {
+        long attacks = 0L;
+        for (int[] step : steps) {
+            int r = row + step[0];
+            int c = col + step[1];
+            if (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                attacks |= 1L << BoardState.square(r, c);
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * Returns the squares attacked by a sliding piece by walking the rays
+     * square by square. Only used to fill the tables.
+     *
+     * @param row The row of the piece
+     * @param col The column of the piece
+     * @param steps The directions of the piece
+     * @param occupied The squares occupied by any piece
+     * @return The bitboard of the attacked squares
+     */
+    private static long slidingAttacks(int row, int col, int[][] steps, long occupied) {
+        long attacks = 0L;
+        for (int[] step : steps) {
+            int r = row + step[0];
+            int c = col + step[1];
+            while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                long bit = 1L << BoardState.square(r, c);
+                attacks |= bit;
+                // Stop at the first piece on the ray
+                if ((occupied & bit) != 0) break;
+                r += step[0];
+                c += step[1];
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * Returns the squares that can block a sliding piece. The last square of
+     * each ray is left out because a piece there never blocks anything.
+     *
+     * @param row The row of the piece
+     * @param col The column of the piece
+     * @param steps The directions of the piece
+     * @return The bitboard of the squares
+     */
+    private static long blockerMask(int row, int col, int[][] steps) {
+        long mask = 0L;
+        for (int[] step : steps) {
+            int r = row + step[0];
+            int c = col + step[1];
+            while (r + step[0] >= 0 && r + step[0] < 8 && c + step[1] >= 0 && c + step[1] < 8) {
+                mask |= 1L << BoardState.square(r, c);
+                r += step[0];
+                c += step[1];
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Fill the table of attacks of a sliding piece on a square
+     *
+     * @param square The square of the piece
+     * @param steps The directions of the piece
+     * @param masks The blocker masks of the piece
+     * @param magics The magic numbers of the piece
+     * @param shifts The shifts to fill
+     * @param table The table of attacks to fill
+     */
+    private static void initMagic(int square, int[][] steps, long[] masks, long[] magics, int[] shifts, long[][] table) {
+        long mask = masks[square];
+        int bits = Long.bitCount(mask);
+        shifts[square] = 64 - bits;
+        table[square] = new long[1 << bits];
+
+        // Go through every subset of the mask and store the attacks for it
+        long blockers = 0L;
+        do {
+            int index = (int)((blockers * magics[square]) >>> shifts[square]);
+            table[square][index] = slidingAttacks(square / 8, square % 8, steps, blockers);
+            blockers = (blockers - mask) & mask;
+        } while (blockers != 0);
+    }
+}
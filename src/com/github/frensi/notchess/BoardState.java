@@ -0,0 +1,615 @@
+package com.github.frensi.notchess;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * The state of a notchess game without any graphics. The pieces are stored
+ * in twelve bitboards, one for each piece type of each color, and in an
+ * array with the piece on each square. Squares are numbered the same way as
+ * the button matrix: square = row * 8 + col, where row 0 is the eighth rank
+ * (black side) and row 7 is the first rank.
+ *
+ * Moves can be made with makeMove and taken back with unmakeMove. Each move
+ * made pushes an undo record (the move, which already holds the captured
+ * piece and the promotion, with the moves left, the hash and the attacks it
+ * changed before it) on a stack, so a search can go forward and back without
+ * copying the board.
+ *
+ * The board also keeps the squares attacked by the piece on every square.
+ * A move only changes the attacks of the pieces on the two squares it
+ * touches and of the bishops, rooks and queens whose lines go through them,
+ * so only those are computed again. Whether a player has to capture, and
+ * whether a move is one of those captures, is then known without looking
+ * at every piece.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public class BoardState {
+
+    // The piece types
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    // The colors of the pieces
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    // Value returned when there is no piece on a square
+    public static final int EMPTY = -1;
+
+    // The names of the pieces used in the moves, indexed by piece type
+    public static final String PIECE_NAMES = "PNBRQK";
+
+    // The results of a game
+    public static final int ONGOING = 0;
+    public static final int WHITE_WINS = 1;
+    public static final int BLACK_WINS = 2;
+    public static final int TIE = 3;
+    // The messages shown for each result
+    public static final String[] RESULT_NAMES = {null, "WHITE WINS", "BLACK WINS", "TIE GAME"};
+
+    // The bitboards of the pieces, indexed by color * 6 + type
+    public final long[] bitboards = new long[12];
+    // Store which players has to move (changed with endTurn)
+    public boolean whiteTurn = true;
+    // The number of moves left until the game ends (changed with endTurn)
+    public int movesLeft = 50;
+    // The Zobrist hash of the position, kept up to date by every change of the board
+    public long hash = Zobrist.movesLeftKey(50);
+
+    // The undo records of the moves made: the move with the moves left before it in the high bits
+    private long[] undoMoves = new long[256];
+    // The hash before each move made
+    private long[] undoHashes = new long[256];
+    // The number of moves that can be taken back
+    private int undoCount;
+    // The attacks changed by the moves made: the square and the attacks before the move
+    private int[] undoAttackSquares = new int[1024];
+    private long[] undoAttacks = new long[1024];
+    // The number of changed attacks stored, and the number before each move made
+    private int undoAttackCount;
+    private int[] undoAttackStart = new int[256];
+    // Set while makeMove stores the attacks it changes
+    private boolean storeAttacks;
+
+    // The piece on each square, or EMPTY
+    private final int[] squares = new int[64];
+    // The squares occupied by each player
+    private final long[] colorOccupancy = new long[2];
+    // The squares attacked by the piece on each square, 0 for empty squares
+    private final long[] attacksFrom = new long[64];
+    // The squares attacked by all the pieces of each player
+    private final long[] sideAttacks = new long[2];
+    // Set when sideAttacks has to be computed again from attacksFrom
+    private boolean sideAttacksChanged;
+
+    /**
+     * Constructor of an empty board
+     */
+    public BoardState() {
+        Arrays.fill(squares, EMPTY);
+    }
+
+    /**
+     * Constructor that copies another board
+     *
+     * @param other The board to copy
+     */
+    public BoardState(BoardState other) {
+        copyFrom(other);
+    }
+
+    /**
+     * Make this board the same as another board
+     *
+     * @param other The board to copy
+     */
+    public final void copyFrom(BoardState other) {
+        System.arraycopy(other.bitboards, 0, bitboards, 0, 12);
+        whiteTurn = other.whiteTurn;
+        movesLeft = other.movesLeft;
+        hash = other.hash;
+        undoCount = 0;
+        undoAttackCount = 0;
+        System.arraycopy(other.squares, 0, squares, 0, 64);
+        colorOccupancy[WHITE] = other.colorOccupancy[WHITE];
+        colorOccupancy[BLACK] = other.colorOccupancy[BLACK];
+        System.arraycopy(other.attacksFrom, 0, attacksFrom, 0, 64);
+        sideAttacks[WHITE] = other.sideAttacks[WHITE];
+        sideAttacks[BLACK] = other.sideAttacks[BLACK];
+        sideAttacksChanged = other.sideAttacksChanged;
+    }
+
+    /**
+     * Returns the index of the piece used in the bitboards
+     *
+     * @param color The color of the piece (WHITE or BLACK)
+     * @param type The type of the piece
+     * @return The index of the piece
+     */
+    public static int piece(int color, int type) {
+        return color * 6 + type;
+    }
+
+    /**
+     * Returns the type of a piece index
+     *
+     * @param piece The index of the piece
+     * @return The type of the piece
+     */
+    public static int typeOf(int piece) {
+        return piece % 6;
+    }
+
+    /**
+     * Returns the color of a piece index
+     *
+     * @param piece The index of the piece
+     * @return The color of the piece (WHITE or BLACK)
+     */
+    public static int colorOf(int piece) {
+        return piece / 6;
+    }
+
+    /**
+     * Converts the color used by the pieces to the color used by the board
+     *
+     * @param color The color of the piece
+     * @return WHITE or BLACK
+     */
+    public static int colorIndex(Color color) {
+        return color.equals(Color.white) ? WHITE : BLACK;
+    }
+
+    /**
+     * Returns the square of a row and a column
+     *
+     * @param row The row of the button matrix
+     * @param col The column of the button matrix
+     * @return The square
+     */
+    public static int square(int row, int col) {
+        return row * 8 + col;
+    }
+
+    /**
+     * Remove all the pieces from the board
+     */
+    public void clear() {
+        for (int i = 0; i < 12; i++) {
+            bitboards[i] = 0L;
+        }
+        whiteTurn = true;
+        movesLeft = 50;
+        hash = Zobrist.movesLeftKey(50);
+        undoCount = 0;
+        undoAttackCount = 0;
+        Arrays.fill(squares, EMPTY);
+        Arrays.fill(colorOccupancy, 0L);
+        Arrays.fill(attacksFrom, 0L);
+        Arrays.fill(sideAttacks, 0L);
+        sideAttacksChanged = false;
+    }
+
+    /**
+     * Put all the pieces of a position on the board at once, faster than
+     * putting them one by one with setPiece
+     *
+     * @param pieces The bitboards of the pieces, indexed like bitboards (they must not overlap)
+     * @param whiteTurn True if white has to move
+     * @param movesLeft The moves left until the game ends
+     */
+    public void setPosition(long[] pieces, boolean whiteTurn, int movesLeft) {
+        clear();
+        this.whiteTurn = whiteTurn;
+        this.movesLeft = movesLeft;
+        hash = Zobrist.movesLeftKey(movesLeft) ^ (whiteTurn ? 0L : Zobrist.BLACK_TO_MOVE);
+        for (int piece = 0; piece < 12; piece++) {
+            bitboards[piece] = pieces[piece];
+            colorOccupancy[colorOf(piece)] |= pieces[piece];
+            long squaresOfPiece = pieces[piece];
+            while (squaresOfPiece != 0) {
+                int square = Long.numberOfTrailingZeros(squaresOfPiece);
+                squaresOfPiece &= squaresOfPiece - 1;
+                squares[square] = piece;
+                hash ^= Zobrist.PIECE_KEYS[piece][square];
+            }
+        }
+        // Every piece is on the board, so the attacks are computed once for each one
+        long occupied = occupied();
+        long pieceSquares = occupied;
+        while (pieceSquares != 0) {
+            int square = Long.numberOfTrailingZeros(pieceSquares);
+            pieceSquares &= pieceSquares - 1;
+            int piece = squares[square];
+            attacksFrom[square] = AttackTables.attacks(typeOf(piece), colorOf(piece), square, occupied);
+        }
+        sideAttacksChanged = true;
+    }
+
+    /**
+     * Set up the pieces at the start of the game
+     */
+    public void setUpBoard() {
+        clear();
+        // The back rank from column A to column H
+        int[] backRank = {ROOK, KNIGHT, BISHOP, QUEEN, KING, BISHOP, KNIGHT, ROOK};
+        for (int col = 0; col < 8; col++) {
+            setPiece(piece(BLACK, backRank[col]), square(0, col));
+            setPiece(piece(BLACK, PAWN), square(1, col));
+            setPiece(piece(WHITE, PAWN), square(6, col));
+            setPiece(piece(WHITE, backRank[col]), square(7, col));
+        }
+    }
+
+    /**
+     * Returns the squares occupied by one of the players
+     *
+     * @param color WHITE or BLACK
+     * @return The bitboard of the squares
+     */
+    public long occupancy(int color) {
+        return colorOccupancy[color];
+    }
+
+    /**
+     * Returns the squares occupied by any piece
+     *
+     * @return The bitboard of the squares
+     */
+    public long occupied() {
+        return colorOccupancy[WHITE] | colorOccupancy[BLACK];
+    }
+
+    /**
+     * Returns the number of pieces of a player
+     *
+     * @param color WHITE or BLACK
+     * @return The number of pieces
+     */
+    public int pieceCount(int color) {
+        return Long.bitCount(occupancy(color));
+    }
+
+    /**
+     * Returns the result of the game from the pieces left. A player that lost
+     * all the pieces wins; when both players made 50 moves the player with the
+     * fewest pieces wins. A player that can not move is checked separately
+     * with the legal moves.
+     *
+     * @return ONGOING, WHITE_WINS, BLACK_WINS or TIE
+     */
+    public int result() {
+        int white = pieceCount(WHITE);
+        int black = pieceCount(BLACK);
+        if (white == 0) {
+            return WHITE_WINS;
+        }
+        if (black == 0) {
+            return BLACK_WINS;
+        }
+        if (movesLeft <= 0) {
+            if (white < black) return WHITE_WINS;
+            if (black < white) return BLACK_WINS;
+            return TIE;
+        }
+        return ONGOING;
+    }
+
+    /**
+     * Returns the piece on a square
+     *
+     * @param square The square to check
+     * @return The index of the piece, or EMPTY
+     */
+    public int pieceAt(int square) {
+        return squares[square];
+    }
+
+    /**
+     * Check if there is no piece on a button of the matrix
+     *
+     * @param row The row of the button
+     * @param col The column of the button
+     * @return True if empty, false otherwise
+     */
+    public boolean isEmpty(int row, int col) {
+        return (occupied() & (1L << square(row, col))) == 0;
+    }
+
+    /**
+     * Put a piece on a square, replacing the piece that was there
+     *
+     * @param piece The index of the piece
+     * @param square The square
+     */
+    public void setPiece(int piece, int square) {
+        clearSquare(square);
+        bitboards[piece] |= 1L << square;
+        colorOccupancy[colorOf(piece)] |= 1L << square;
+        squares[square] = piece;
+        hash ^= Zobrist.PIECE_KEYS[piece][square];
+        updateAttacks(1L << square);
+    }
+
+    /**
+     * Put a piece on a button of the matrix, replacing the piece that was there
+     *
+     * @param type The type of the piece
+     * @param color The color of the piece
+     * @param row The row of the button
+     * @param col The column of the button
+     */
+    public void setPiece(int type, Color color, int row, int col) {
+        setPiece(piece(colorIndex(color), type), square(row, col));
+    }
+
+    /**
+     * Remove the piece on a square if there is one
+     *
+     * @param square The square
+     */
+    public void removePiece(int square) {
+        clearSquare(square);
+        updateAttacks(1L << square);
+    }
+
+    /**
+     * Remove the piece on a square without updating the attacks
+     *
+     * @param square The square
+     */
+    private void clearSquare(int square) {
+        int piece = squares[square];
+        if (piece != EMPTY) {
+            bitboards[piece] &= ~(1L << square);
+            colorOccupancy[colorOf(piece)] &= ~(1L << square);
+            hash ^= Zobrist.PIECE_KEYS[piece][square];
+            squares[square] = EMPTY;
+        }
+    }
+
+    /**
+     * Move a piece from one square to another, capturing the piece there
+     *
+     * @param from The square where the piece is
+     * @param to The square where the piece moves
+     */
+    public void movePiece(int from, int to) {
+        int piece = pieceAt(from);
+        if (piece == EMPTY) {
+            return;
+        }
+        removePiece(from);
+        setPiece(piece, to);
+    }
+
+    /**
+     * Make a move that is known to be legal: move the piece, promote pawns,
+     * change the player that has to move and count the moves left. The
+     * captured piece is read from the move, so the move has to be made for
+     * this position (by MoveGenerator or Move.parse).
+     *
+     * @param move The move to make (see Move)
+     */
+    public void applyMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = Move.piece(move);
+        int captured = Move.captured(move);
+        int color = colorOf(piece);
+
+        bitboards[piece] &= ~(1L << from);
+        squares[from] = EMPTY;
+        colorOccupancy[color] ^= (1L << from) | (1L << to);
+        hash ^= Zobrist.PIECE_KEYS[piece][from];
+        if (captured != EMPTY) {
+            bitboards[captured] &= ~(1L << to);
+            colorOccupancy[1 - color] &= ~(1L << to);
+            hash ^= Zobrist.PIECE_KEYS[captured][to];
+        }
+        // A promoted pawn arrives as a queen
+        int arriving = Move.isPromotion(move) ? piece(color, QUEEN) : piece;
+        bitboards[arriving] |= 1L << to;
+        squares[to] = arriving;
+        hash ^= Zobrist.PIECE_KEYS[arriving][to];
+        updateAttacks((1L << from) | (1L << to));
+        endTurn();
+    }
+
+    /**
+     * Make a move that is known to be legal and remember how to take it back
+     *
+     * @param move The move to make (see Move)
+     */
+    public void makeMove(int move) {
+        if (undoCount == undoMoves.length) {
+            undoMoves = Arrays.copyOf(undoMoves, undoCount * 2);
+            undoHashes = Arrays.copyOf(undoHashes, undoCount * 2);
+            undoAttackStart = Arrays.copyOf(undoAttackStart, undoCount * 2);
+        }
+        // A move changes the attacks of 64 pieces at most
+        if (undoAttackCount + 64 > undoAttacks.length) {
+            undoAttacks = Arrays.copyOf(undoAttacks, undoAttacks.length * 2);
+            undoAttackSquares = Arrays.copyOf(undoAttackSquares, undoAttackSquares.length * 2);
+        }
+        undoMoves[undoCount] = (move & 0xFFFFFFFFL) | ((long)movesLeft << 32);
+        undoHashes[undoCount] = hash;
+        undoAttackStart[undoCount] = undoAttackCount;
+        undoCount++;
+        storeAttacks = true;
+        applyMove(move);
+        storeAttacks = false;
+    }
+
+    /**
+     * Take back the last move made with makeMove
+     */
+    public void unmakeMove() {
+        undoCount--;
+        long record = undoMoves[undoCount];
+        int move = (int)record;
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = Move.piece(move);
+        int captured = Move.captured(move);
+        int color = colorOf(piece);
+
+        int arrived = Move.isPromotion(move) ? piece(color, QUEEN) : piece;
+        bitboards[arrived] &= ~(1L << to);
+        squares[to] = captured;
+        colorOccupancy[color] ^= (1L << from) | (1L << to);
+        if (captured != EMPTY) {
+            bitboards[captured] |= 1L << to;
+            colorOccupancy[1 - color] |= 1L << to;
+        }
+        bitboards[piece] |= 1L << from;
+        squares[from] = piece;
+
+        // Put back the attacks changed by the move
+        int start = undoAttackStart[undoCount];
+        while (undoAttackCount > start) {
+            undoAttackCount--;
+            attacksFrom[undoAttackSquares[undoAttackCount]] = undoAttacks[undoAttackCount];
+        }
+        sideAttacksChanged = true;
+
+        whiteTurn = !whiteTurn;
+        movesLeft = (int)(record >> 32);
+        hash = undoHashes[undoCount];
+    }
+
+    /**
+     * Returns the number of moves that can be taken back with unmakeMove
+     *
+     * @return The number of moves
+     */
+    public int undoCount() {
+        return undoCount;
+    }
+
+    /**
+     * Give the turn to the other player. A move is counted after both
+     * players moved, so the moves left go down after black moves.
+     */
+    public void endTurn() {
+        hash ^= Zobrist.movesLeftKey(movesLeft) ^ Zobrist.BLACK_TO_MOVE;
+        if (!whiteTurn) {
+            movesLeft--;
+        }
+        whiteTurn = !whiteTurn;
+        hash ^= Zobrist.movesLeftKey(movesLeft);
+    }
+
+    /**
+     * Returns the squares attacked by the piece on a square
+     *
+     * @param square The square
+     * @return The bitboard of the attacked squares, 0 if the square is empty
+     */
+    public long attacksFrom(int square) {
+        return attacksFrom[square];
+    }
+
+    /**
+     * Returns the squares attacked by all the pieces of a player
+     *
+     * @param color WHITE or BLACK
+     * @return The bitboard of the attacked squares
+     */
+    public long attacks(int color) {
+        if (sideAttacksChanged) {
+            // The attacks of each player are the attacks of all its pieces
+            for (int side = WHITE; side <= BLACK; side++) {
+                long pieces = occupancy(side);
+                long attacks = 0L;
+                while (pieces != 0) {
+                    attacks |= attacksFrom[Long.numberOfTrailingZeros(pieces)];
+                    pieces &= pieces - 1;
+                }
+                sideAttacks[side] = attacks;
+            }
+            sideAttacksChanged = false;
+        }
+        return sideAttacks[color];
+    }
+
+    /**
+     * Check if a player has to capture because one of the pieces attacks an
+     * opponent piece
+     *
+     * @param color WHITE or BLACK
+     * @return True if the player has to capture, false otherwise
+     */
+    public boolean captureForced(int color) {
+        return (attacks(color) & occupancy(1 - color)) != 0;
+    }
+
+    /**
+     * Check if a move is one of the captures of this position: the piece is
+     * of the player that moves and on the from square, it attacks the to
+     * square and the captured piece is there. A pawn reaching the last row
+     * has to be marked as a promotion.
+     *
+     * @param move The move (see Move)
+     * @return True if the move is a capture that can be made, false otherwise
+     */
+    public boolean isCapture(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = Move.piece(move);
+        int captured = Move.captured(move);
+        return captured != EMPTY
+            && colorOf(piece) == (whiteTurn ? WHITE : BLACK)
+            && colorOf(captured) != colorOf(piece)
+            && squares[from] == piece
+            && squares[to] == captured
+            && (attacksFrom[from] & (1L << to)) != 0
+            && Move.isPromotion(move) == Move.promotes(piece, to);
+    }
+
+    /**
+     * Compute again the attacks of the pieces affected by a change of one or
+     * two squares: the pieces on those squares and the bishops, rooks and
+     * queens that reach them. A line that reached a changed square before the
+     * change and not after is blocked by the other changed square, which it
+     * reaches after the change, so looking at the board after the change finds
+     * every affected line.
+     *
+     * @param changed The bitboard of the squares that changed
+     */
+    private void updateAttacks(long changed) {
+        long occupied = occupied();
+        long diagonal = bitboards[BISHOP] | bitboards[QUEEN] | bitboards[6 + BISHOP] | bitboards[6 + QUEEN];
+        long straight = bitboards[ROOK] | bitboards[QUEEN] | bitboards[6 + ROOK] | bitboards[6 + QUEEN];
+
+        // The sliding pieces whose lines go through a changed square
+        long affected = changed;
+        long lines = changed;
+        while (lines != 0) {
+            int square = Long.numberOfTrailingZeros(lines);
+            lines &= lines - 1;
+            affected |= AttackTables.bishopAttacks(square, occupied) & diagonal;
+            affected |= AttackTables.rookAttacks(square, occupied) & straight;
+        }
+
+        while (affected != 0) {
+            int square = Long.numberOfTrailingZeros(affected);
+            affected &= affected - 1;
+            int piece = squares[square];
+            if (storeAttacks) {
+                undoAttackSquares[undoAttackCount] = square;
+                undoAttacks[undoAttackCount] = attacksFrom[square];
+                undoAttackCount++;
+            }
+            attacksFrom[square] = piece == EMPTY ? 0L : AttackTables.attacks(typeOf(piece), colorOf(piece), square, occupied);
+        }
+        sideAttacksChanged = true;
+    }
+}
@@ -2,10 +2,8 @@ package com.github.frensi.notchess;
 
 import java.awt.Color;
 import java.awt.Point;
-import java.util.ArrayList;
 
 import javax.swing.ImageIcon;
-import javax.swing.JButton;
 
 
 /**
@@ -21,21 +19,21 @@ public abstract class ChessPiece {
 	public Point position; 
 	// The image of the piece
 	public ImageIcon image;
-	// The matrix of buttons
-	public JButton[][] buttonMatrix;
+	// The board where the piece is
+	public BoardState board;
 	
 	/**
 	 * Constructor of the pieces 
 	 * @param color    The color of the piece
 	 * @param position The current position of the piece
 	 * @param image    The image of the piece
-	 * @param buttonMatrix The matrix of the buttons
+	 * @param board    The board where the piece is
 	 */
-	public ChessPiece(Color color, Point position, ImageIcon image, JButton[][] buttonMatrix) {
+	public ChessPiece(Color color, Point position, ImageIcon image, BoardState board) {
 		
 		this.color = color;
 		this.position = position;
-		this.buttonMatrix = buttonMatrix;
+		this.board = board;
 		this.image = image;
 	}
 	
@@ -44,13 +42,90 @@ public abstract class ChessPiece {
 	 * Constructor without icon (OBSOLETE)
 	 * @param color The Color of the piece
 	 * @param position The Position of the piece
-	 * @param buttonMatrix The matrix of the buttons
+	 * @param board The board where the piece is
 	 */
-	public ChessPiece(Color color, Point position, JButton[][] buttonMatrix) {		
+	public ChessPiece(Color color, Point position, BoardState board) {		
 		
 		this.color = color;
 		this.position = position;
-		this.buttonMatrix = buttonMatrix;
+		this.board = board;
+	}
+
+	/**
+	 * Returns the square of the piece on the board
+	 * 
+	 * @return The square of the piece
+	 */
+	protected int square() {
+		return BoardState.square(position.x, position.y);
+	}
+
+	/**
+	 * Returns the squares where the pieces of the opponent are
+	 * 
+	 * @return The bitboard of the opponent pieces
+	 */
+	protected long opponentPieces() {
+		return board.occupancy(1 - BoardState.colorIndex(color));
+	}
+
+	/**
+	 * Check the parts of a move that are the same for every piece: the move
+	 * starts from this piece, the captured piece is the one on the board and
+	 * the promotion flag is set only for pawns reaching the last row.
+	 * 
+	 * @param move The move to check
+	 * @param type The type of this piece
+	 * @return True if the move belongs to this piece, false otherwise
+	 */
+	protected boolean isOwnMove(int move, int type) {
+		int piece = BoardState.piece(BoardState.colorIndex(color), type);
+		int to = Move.to(move);
+		// Check if the move starts from this piece
+		if (Move.from(move) != square() || Move.piece(move) != piece || board.pieceAt(square()) != piece) {
+			return false;
+		}
+		// Check if the first and second positions are the same
+		if (to == square()) {
+			return false;
+		}
+		// Check if the captured piece is the one on the board
+		if (Move.captured(move) != board.pieceAt(to)) {
+			return false;
+		}
+		return Move.isPromotion(move) == Move.promotes(piece, to);
+	}
+
+	/**
+	 * Returns the move of this piece to a position
+	 * 
+	 * @param type The type of this piece
+	 * @param row  The row where the piece moves
+	 * @param col  The column where the piece moves
+	 * @return The move, or Move.NONE if the position is outside the board
+	 */
+	protected int moveTo(int type, int row, int col) {
+		if (row < 0 || row > 7 || col < 0 || col > 7) {
+			return Move.NONE;
+		}
+		int piece = BoardState.piece(BoardState.colorIndex(color), type);
+		int to = BoardState.square(row, col);
+		return Move.encode(square(), to, piece, board.pieceAt(to), Move.promotes(piece, to));
+	}
+
+	/**
+	 * Add the moves from the position of the piece to the target squares
+	 * 
+	 * @param type    The type of this piece
+	 * @param targets The bitboard of the squares where the piece moves
+	 * @param moves   The list where the moves are added
+	 */
+	protected void addMoves(int type, long targets, MoveList moves) {
+		while (targets != 0) {
+			int to = Long.numberOfTrailingZeros(targets);
+			targets &= targets - 1;
+			moves.add(moveTo(type, to / 8, to % 8));
+		}
 	}
 
 	/**
@@ -58,23 +133,25 @@ public abstract class ChessPiece {
 	 * 
 	 * @param move The move to make
 	 */
-	public abstract void move(String move);
+	public void move(int move) {
+		// Update the board
+		board.movePiece(Move.from(move), Move.to(move));
+		// Update the position
+		position.x = Move.to(move) / 8;
+		position.y = Move.to(move) % 8;
+	}
 	
 	/**
-	 * Return the move that the piece can make to capture another piece
+	 * Add the moves that the piece can make to capture another piece
 	 * 
-	 * @return The move that can capture
+	 * @param moves The list where the moves that can capture are added
 	 */
-	public abstract ArrayList<String> canCapture();
+	public abstract void canCapture(MoveList moves);
 	
 	/**
 	 * Determines if the move is valid
 	 * @param move The move to check
+	 * @return True if possible, false otherwise
 	 */
-	public abstract Boolean validMove(String move);
-
-	/**
-	 * Make a random move
-	 */
-	public abstract String pcMove();
+	public abstract boolean validMove(int move);
 }
\ No newline at end of file
@@ -0,0 +1,404 @@
+package com.github.frensi.notchess;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Files of finished games in a text form like the PGN of chess. Every game
+ * has a few tags, a blank line, the moves numbered in pairs and the result:
+ *
+ *   [Event "notchess"]
+ *   [Round "1"]
+ *   [Result "BLACK WINS"]
+ *   [Plies "37"]
+ *
+ *   1. PE2E3 PD7D5 2. BF1B5 PC7C6 3. BB5C6 NB8C6 ...
+ *   ... 19. KE1D1 0-1
+ *
+ * The result is also written at the end of the moves like in PGN (1-0 for
+ * white, 0-1 for black and 1/2-1/2 for a tie). A game that does not start at
+ * the start of the game has a Position tag with the position as text (see
+ * PositionNotation).
+ *
+ * The Reader reads one game at a time into the same Game, so an archive of
+ * any size is read with the same memory. Every move is checked with the
+ * rules (MoveGenerator.isLegal) and the result is checked against the one
+ * the rules give at the end of the moves.
+ *
+ * Run it as java com.github.frensi.notchess.GameArchive followed by the
+ * file of an archive to check every game of it and print the totals.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public final class GameArchive {
+
+    // The size of the buffers of the files
+    private static final int BUFFER_SIZE = 1 << 16;
+    // The moves written on one line
+    private static final int MOVES_PER_LINE = 12;
+    // The result at the end of the moves, indexed like BoardState.RESULT_NAMES
+    private static final String[] RESULT_TOKENS = {"*", "1-0", "0-1", "1/2-1/2"};
+
+    /**
+     * No objects of this class are needed
+     */
+    private GameArchive() {
+
+    }
+
+    /**
+     * A game of an archive
+     */
+    public static class Game {
+
+        // The number of the game in the archive
+        public int number;
+        // The position where the game starts as text, or null for the start of the game
+        public String position;
+        // The moves of the game (see Move)
+        public final MoveList moves = new MoveList();
+        // The result of the game (see BoardState.result)
+        public int result;
+
+        /**
+         * Forget the game so the object can hold the next one
+         */
+        public void clear() {
+            number = 0;
+            position = null;
+            moves.clear();
+            result = BoardState.ONGOING;
+        }
+    }
+
+    /**
+     * Writes games to an archive. The games of several threads can be
+     * written to the same writer.
+     */
+    public static class Writer implements Closeable {
+
+        // The text of the archive
+        private final BufferedWriter out;
+
+        /**
+         * Create an archive, or add to the end of it if it exists
+         *
+         * @param path The file of the archive
+         * @throws IOException If the file can not be written
+         */
+        public Writer(Path path) throws IOException {
+            this(new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.ISO_8859_1), BUFFER_SIZE));
+        }
+
+        /**
+         * Write an archive to a stream of text
+         *
+         * @param out The text of the archive
+         */
+        public Writer(BufferedWriter out) {
+            this.out = out;
+        }
+
+        /**
+         * Write a finished game
+         *
+         * @param game The game
+         * @throws IOException If the file can not be written
+         */
+        public synchronized void write(Game game) throws IOException {
+            out.write("[Event \"notchess\"]\n");
+            out.write("[Round \"" + game.number + "\"]\n");
+            if (game.position != null) {
+                out.write("[Position \"" + game.position + "\"]\n");
+            }
+            out.write("[Result \"" + resultName(game.result) + "\"]\n");
+            out.write("[Plies \"" + game.moves.size + "\"]\n\n");
+            // Black moves first in the first pair if the game starts with black
+            boolean whiteTurn = game.position == null || game.position.contains(" w ");
+            int pair = 1;
+            for (int i = 0; i < game.moves.size; i++) {
+                if (i > 0) {
+                    out.write(i % MOVES_PER_LINE == 0 ? '\n' : ' ');
+                }
+                if (whiteTurn) {
+                    out.write(pair + ". ");
+                } else if (i == 0) {
+                    out.write(pair + "... ");
+                }
+                out.write(Move.toString(game.moves.get(i)));
+                if (!whiteTurn) pair++;
+                whiteTurn = !whiteTurn;
+            }
+            out.write(game.moves.size > 0 ? " " : "");
+            out.write(RESULT_TOKENS[game.result]);
+            out.write("\n\n");
+        }
+
+        /**
+         * Write the games still in the buffer to the file
+         *
+         * @throws IOException If the file can not be written
+         */
+        public synchronized void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the games of an archive one at a time and checks them with the
+     * rules
+     */
+    public static class Reader implements Closeable {
+
+        // The text of the archive
+        private final BufferedReader in;
+        // The board where the moves are checked
+        private final BoardState board = new BoardState();
+        // The number of the last line read
+        private long lineNumber;
+
+        /**
+         * Open an archive
+         *
+         * @param path The file of the archive
+         * @throws IOException If the file can not be read
+         */
+        public Reader(Path path) throws IOException {
+            this(new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.ISO_8859_1), BUFFER_SIZE));
+        }
+
+        /**
+         * Read an archive from a stream of text
+         *
+         * @param in The text of the archive
+         */
+        public Reader(BufferedReader in) {
+            this.in = in;
+        }
+
+        /**
+         * Read the next game and check it
+         *
+         * @param game Where the game is stored
+         * @return True if a game was read, false at the end of the archive
+         * @throws IOException If the file can not be read or the game is not valid
+         */
+        public boolean next(Game game) throws IOException {
+            game.clear();
+            String line = readLine();
+            // Skip the blank lines between games
+            while (line != null && line.isEmpty()) {
+                line = readLine();
+            }
+            if (line == null) {
+                return false;
+            }
+
+            // The tags, until the blank line before the moves
+            int taggedResult = -1;
+            for (; line != null && !line.isEmpty(); line = readLine()) {
+                if (!line.startsWith("[") || !line.endsWith("\"]")) {
+                    throw error("not a tag: " + line);
+                }
+                int quote = line.indexOf(" \"");
+                if (quote < 0) {
+                    throw error("not a tag: " + line);
+                }
+                String name = line.substring(1, quote);
+                String value = line.substring(quote + 2, line.length() - 2);
+                if (name.equals("Round")) {
+                    game.number = Integer.parseInt(value);
+                } else if (name.equals("Position")) {
+                    game.position = value;
+                } else if (name.equals("Result")) {
+                    taggedResult = resultOf(value);
+                }
+            }
+
+            // Start from the position of the game
+            if (game.position == null) {
+                board.setUpBoard();
+            } else {
+                try {
+                    PositionNotation.parse(game.position, board);
+                } catch (IllegalArgumentException e) {
+                    throw error(e.getMessage());
+                }
+            }
+
+            // The moves, until the result
+            int finalResult = -1;
+            while (finalResult < 0) {
+                line = readLine();
+                if (line == null || line.isEmpty()) {
+                    throw error("the moves end without a result");
+                }
+                int length = line.length();
+                int start = 0;
+                while (start < length) {
+                    int end = line.indexOf(' ', start);
+                    if (end < 0) end = length;
+                    if (end == start) {
+                        start++;
+                        continue;
+                    }
+                    if (finalResult >= 0) {
+                        throw error("moves after the result");
+                    }
+                    if (line.charAt(end - 1) == '.') {
+                        // The number of the pair of moves
+                    } else if (end - start == 5 && Character.isUpperCase(line.charAt(start))) {
+                        play(game, line, start);
+                    } else {
+                        finalResult = resultToken(line.substring(start, end));
+                    }
+                    start = end + 1;
+                }
+            }
+
+            // The result has to be the one the rules give
+            int result = board.result();
+            if (result == BoardState.ONGOING && !MoveGenerator.hasLegalMove(board, board.whiteTurn ? BoardState.WHITE : BoardState.BLACK)) {
+                result = BoardState.TIE;
+            }
+            if (result != finalResult || (taggedResult >= 0 && taggedResult != finalResult)) {
+                throw error("the result is " + resultName(finalResult) + " but the moves give " + resultName(result));
+            }
+            game.result = result;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        /**
+         * Check a move and make it on the board
+         *
+         * @param game The game where the move is stored
+         * @param line The line of the move
+         * @param start The first letter of the move
+         * @throws IOException If the move is not valid
+         */
+        private void play(Game game, String line, int start) throws IOException {
+            if (board.result() != BoardState.ONGOING) {
+                throw error("a move after the end of the game");
+            }
+            int move = Move.parse(line, start, board);
+            if (move == Move.NONE || !MoveGenerator.isLegal(board, move) || game.moves.size == game.moves.moves.length) {
+                throw error("invalid move " + line.substring(start, start + 5));
+            }
+            board.applyMove(move);
+            game.moves.add(move);
+        }
+
+        /**
+         * Read the next line of the archive
+         *
+         * @return The line, or null at the end of the archive
+         * @throws IOException If the file can not be read
+         */
+        private String readLine() throws IOException {
+            lineNumber++;
+            return in.readLine();
+        }
+
+        /**
+         * Returns the error of a game that is not valid
+         *
+         * @param message What is wrong
+         * @return The error
+         */
+        private IOException error(String message) {
+            return new IOException("Line " + lineNumber + ": " + message);
+        }
+
+        /**
+         * Returns the result of the token at the end of the moves
+         *
+         * @param token The token
+         * @return The result
+         * @throws IOException If the token is not a result
+         */
+        private int resultToken(String token) throws IOException {
+            for (int result = 0; result < RESULT_TOKENS.length; result++) {
+                if (RESULT_TOKENS[result].equals(token)) {
+                    return result;
+                }
+            }
+            throw error("not a move nor a result: " + token);
+        }
+
+        /**
+         * Returns the result of the name in the Result tag
+         *
+         * @param name The name
+         * @return The result
+         * @throws IOException If the name is not a result
+         */
+        private int resultOf(String name) throws IOException {
+            for (int result = 1; result < BoardState.RESULT_NAMES.length; result++) {
+                if (BoardState.RESULT_NAMES[result].equals(name)) {
+                    return result;
+                }
+            }
+            if (name.equals(RESULT_TOKENS[BoardState.ONGOING])) {
+                return BoardState.ONGOING;
+            }
+            throw error("not a result: " + name);
+        }
+    }
+
+    /**
+     * Returns the name of a result, as written in the Result tag
+     *
+     * @param result The result (see BoardState.result)
+     * @return The name
+     */
+    private static String resultName(int result) {
+        return result == BoardState.ONGOING ? RESULT_TOKENS[BoardState.ONGOING] : BoardState.RESULT_NAMES[result];
+    }
+
+    /**
+     * Check every game of an archive and print the totals
+     *
+     * @param args The file of the archive
+     * @throws IOException If the file can not be read or a game is not valid
+     */
+    public static void main(String args[]) throws IOException {
+        Path path = Paths.get(args[0]);
+        long start = System.nanoTime();
+        int[] counts = new int[4];
+        long games = 0;
+        long plies = 0;
+        Game game = new Game();
+        try (Reader reader = new Reader(path)) {
+            while (reader.next(game)) {
+                games++;
+                plies += game.moves.size;
+                counts[game.result]++;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games: %d white wins, %d black wins, %d ties, %d moves, %.0f games/sec, %.1f MB/sec%n",
+            games, counts[BoardState.WHITE_WINS], counts[BoardState.BLACK_WINS], counts[BoardState.TIE], plies,
+            games / seconds, Files.size(path) / seconds / (1 << 20));
+    }
+}
@@ -0,0 +1,276 @@
+package com.github.frensi.notchess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A file where a server writes every move of its games, so the games that
+ * were being played when the server stopped can be replayed when it starts
+ * again.
+ *
+ * The games only add their records to a buffer in memory, they never wait
+ * for the disk. A thread of the journal writes the buffer to the end of the
+ * file and forces it to the disk every few milliseconds, with the records of
+ * all the games together (group commit). A server that crashes loses at most
+ * the moves of the last interval.
+ *
+ * Every record has the same size: the game, the kind of record (a move or
+ * the end of the game), the move or the result, and a check of the three.
+ * When the journal is opened, a record cut by a crash and everything after
+ * it are removed. The file is read a block at a time, so a long journal
+ * does not need to fit in memory, and it is emptied once the games that did
+ * not end were replayed (see compact), so it only grows with the games of
+ * one run of the server.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public final class GameJournal implements Closeable {
+
+    // The milliseconds between two writes to the disk if no other value is given
+    public static final int DEFAULT_SYNC_MILLIS = 10;
+    // The bytes of a record
+    public static final int RECORD_BYTES = 16;
+    // The bytes read from the file at a time when the journal is opened
+    private static final int READ_BYTES = RECORD_BYTES * 4096;
+
+    // The kinds of record
+    private static final int MOVE = 1;
+    private static final int END = 2;
+    // Mixed in the check of every record
+    private static final int CHECK = 0x4E434A31;
+
+    // The file of the journal
+    private final FileChannel channel;
+    // Writes the records to the file
+    private final ScheduledExecutorService writer;
+    // Guards the records added since the last write
+    private final Object lock = new Object();
+    // The records added since the last write
+    private ByteBuffer pending = ByteBuffer.allocate(RECORD_BYTES * 1024);
+    // The records being written (used by sync only)
+    private ByteBuffer writing = ByteBuffer.allocate(RECORD_BYTES * 1024);
+    // The number of the next game
+    private final AtomicInteger nextGame = new AtomicInteger(1);
+    // The moves of the games that did not end when the journal was opened
+    private final Map<Integer, MoveList> unfinished = new LinkedHashMap<Integer, MoveList>();
+
+    /**
+     * Open a journal, or create it if the file does not exist, and read the
+     * games that did not end
+     *
+     * @param path The file of the journal
+     * @param syncMillis The milliseconds between two writes to the disk
+     * @throws IOException If the file can not be read or written
+     */
+    public GameJournal(Path path, int syncMillis) throws IOException {
+        if (syncMillis < 1) {
+            throw new IllegalArgumentException("The journal needs at least one millisecond between writes");
+        }
+        long valid = read(path);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Write after the last good record, a record cut by a crash is overwritten
+        channel.truncate(valid);
+        channel.position(valid);
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notchess-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(() -> {
+            try {
+                sync();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns a new number for a game
+     *
+     * @return The number of the game
+     */
+    public int newGame() {
+        return nextGame.getAndIncrement();
+    }
+
+    /**
+     * Returns the moves of the games that did not end when the journal was
+     * opened, by number of game, in the order they started
+     *
+     * @return The games
+     */
+    public Map<Integer, MoveList> unfinished() {
+        return unfinished;
+    }
+
+    /**
+     * Add a move made in a game
+     *
+     * @param game The number of the game
+     * @param move The move (see Move)
+     */
+    public void move(int game, int move) {
+        append(game, MOVE, move);
+    }
+
+    /**
+     * Add the end of a game
+     *
+     * @param game The number of the game
+     * @param result The result (see BoardState.result), or ONGOING if the game was left
+     */
+    public void end(int game, int result) {
+        append(game, END, result);
+    }
+
+    /**
+     * Write the records added so far and force them to the disk. It is called
+     * by the thread of the journal every few milliseconds.
+     *
+     * @throws IOException If the file can not be written
+     */
+    public synchronized void sync() throws IOException {
+        ByteBuffer full;
+        synchronized (lock) {
+            if (pending.position() == 0) {
+                return;
+            }
+            // Swap the buffers so the games can go on adding records while this one is written
+            full = pending;
+            pending = writing;
+            writing = full;
+        }
+        full.flip();
+        while (full.hasRemaining()) {
+            channel.write(full);
+        }
+        channel.force(false);
+        full.clear();
+    }
+
+    /**
+     * Empty the file if every game in it ended, so the journal does not keep
+     * the games of every run of the server. It is called after the games
+     * that did not end were replayed and ended, before new games are played.
+     *
+     * @return True if the file was emptied
+     * @throws IOException If the file can not be written
+     */
+    public synchronized boolean compact() throws IOException {
+        sync();
+        synchronized (lock) {
+            // A game that started in the meantime still needs its records
+            if (pending.position() != 0) {
+                return false;
+            }
+            unfinished.clear();
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+            return true;
+        }
+    }
+
+    /**
+     * Write the last records and close the file
+     *
+     * @throws IOException If the file can not be written
+     */
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sync();
+        channel.close();
+    }
+
+    /**
+     * Add a record to the buffer
+     *
+     * @param game The number of the game
+     * @param kind MOVE or END
+     * @param value The move or the result
+     */
+    private void append(int game, int kind, int value) {
+        synchronized (lock) {
+            if (pending.remaining() < RECORD_BYTES) {
+                ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            pending.putInt(game).putInt(kind).putInt(value).putInt(check(game, kind, value));
+        }
+    }
+
+    /**
+     * Returns the check of a record
+     *
+     * @param game The number of the game
+     * @param kind MOVE or END
+     * @param value The move or the result
+     * @return The check
+     */
+    private static int check(int game, int kind, int value) {
+        return (game * 31 + kind) * 31 + value ^ CHECK;
+    }
+
+    /**
+     * Read the records of a journal, keep the moves of the games that did not
+     * end and start the numbers of the new games after the ones in the file
+     *
+     * @param path The file of the journal
+     * @return The bytes of the good records at the start of the file
+     * @throws IOException If the file can not be read
+     */
+    private long read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        long valid = 0;
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer records = ByteBuffer.allocate(READ_BYTES);
+            while (file.read(records) > 0) {
+                records.flip();
+                while (records.remaining() >= RECORD_BYTES) {
+                    int game = records.getInt();
+                    int kind = records.getInt();
+                    int value = records.getInt();
+                    if (records.getInt() != check(game, kind, value)) {
+                        // The rest of the file was not written completely
+                        return valid;
+                    }
+                    if (game >= nextGame.get()) {
+                        nextGame.set(game + 1);
+                    }
+                    if (kind == END) {
+                        unfinished.remove(game);
+                    } else {
+                        unfinished.computeIfAbsent(game, number -> new MoveList()).add(value);
+                    }
+                    valid += RECORD_BYTES;
+                }
+                // Keep a record cut at the end of the block for the next block
+                records.compact();
+            }
+        }
+        return valid;
+    }
+}
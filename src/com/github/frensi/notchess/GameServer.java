@@ -0,0 +1,462 @@
+package com.github.frensi.notchess;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.swing.JLabel;
+
+/**
+ * A server that hosts many games at the same time in one program. One
+ * thread waits on a Selector for all the connections, which are
+ * non-blocking SocketChannels, and every connection gets its own game.
+ * The games talk the same way as ServerChess, so ClientChess can play
+ * against this server without changes: the server sends "Please Move",
+ * the client sends its moves, and the server answers each one with its
+ * own move, the invalid move message or the result of the game. The first
+ * byte of a client tells if it talks text or binary (see MoveProtocol).
+ *
+ * The moves are made on a pool of worker threads, so a game where the pc
+ * searches for a long time does not stop the other games. The lines of one
+ * game are handled in order and by one worker at a time. The pause before
+ * the moves of the server (see MovePacing) is timed by the scheduler of the
+ * pacing, so no worker waits while a game is paused.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public class GameServer {
+
+    // The port where the server listens
+    public static final int PORT = 3074;
+    // The longest line accepted from a client
+    public static final int MAX_LINE = 256;
+    // The values of GameConnection.high when it does not hold the first byte of a message
+    private static final int NO_BYTE = -1;
+    private static final int VERSION_BYTE = -2;
+
+    // Waits for all the connections
+    private final Selector selector;
+    // Accepts the new connections
+    private final ServerSocketChannel serverChannel;
+    // Make the moves of the games
+    private final ExecutorService workers;
+    // The games that have new bytes to send
+    private final ConcurrentLinkedQueue<GameConnection> readyToWrite = new ConcurrentLinkedQueue<GameConnection>();
+    // The number of games being played
+    private int games;
+
+    /**
+     * Constructor of the server
+     *
+     * @param port The port to listen
+     * @param workerThreads The number of threads making the moves
+     * @throws IOException If the port can not be opened
+     */
+    public GameServer(int port, int workerThreads) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        workers = Executors.newFixedThreadPool(workerThreads);
+    }
+
+    /**
+     * Serve the games until the thread is interrupted
+     *
+     * @throws IOException If the selector fails
+     */
+    public void run() throws IOException {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select();
+
+                // Wait to write the games that have something to send
+                GameConnection ready;
+                while ((ready = readyToWrite.poll()) != null) {
+                    if (ready.key.isValid()) {
+                        ready.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException e) {
+                        // Only this connection is lost
+                        close(key);
+                    }
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+            serverChannel.close();
+            selector.close();
+        }
+    }
+
+    /**
+     * Returns the number of games being played
+     *
+     * @return The number of games
+     */
+    public int games() {
+        return games;
+    }
+
+    /**
+     * Start a game for a new connection
+     *
+     * @throws IOException If the connection fails
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        GameConnection game = new GameConnection();
+        game.key = channel.register(selector, SelectionKey.OP_READ, game);
+        games++;
+        // Send initial message
+        game.clientConnection.send(MoveProtocol.PLEASE_MOVE);
+        game.flush();
+        game.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Read the bytes sent by a client and give the full lines or binary
+     * messages to its game
+     *
+     * @param key The key of the connection
+     * @throws IOException If the connection fails
+     */
+    private void read(SelectionKey key) throws IOException {
+        GameConnection game = (GameConnection)key.attachment();
+        SocketChannel channel = (SocketChannel)key.channel();
+        ByteBuffer input = game.input;
+        if (channel.read(input) < 0) {
+            close(key);
+            return;
+        }
+        input.flip();
+        boolean newLines = false;
+        while (input.hasRemaining()) {
+            int b = input.get() & 0xFF;
+            if (!game.started) {
+                // The first byte tells the protocol of the client
+                game.started = true;
+                if (b == MoveProtocol.MAGIC) {
+                    game.high = VERSION_BYTE;
+                    continue;
+                }
+                game.high = NO_BYTE;
+            }
+            if (game.high == VERSION_BYTE) {
+                MoveProtocol.checkVersion(b);
+                game.high = NO_BYTE;
+                game.clientConnection = MoveProtocol.binary(null, game.written);
+            } else if (game.clientConnection.binary()) {
+                // Two bytes for every message
+                if (game.high == NO_BYTE) {
+                    game.high = b;
+                } else {
+                    game.received(MoveProtocol.decode(game.high << 8 | b));
+                    game.high = NO_BYTE;
+                    newLines = true;
+                }
+            } else if (b == '\n') {
+                game.received(game.line.toString());
+                game.line.setLength(0);
+                newLines = true;
+            } else if (b != '\r') {
+                game.line.append((char)b);
+            }
+        }
+        input.clear();
+        // A client that never ends the line is not playing
+        if (game.line.length() > MAX_LINE) {
+            close(key);
+            return;
+        }
+        if (newLines) {
+            schedule(game);
+        }
+    }
+
+    /**
+     * Send the bytes waiting in a game
+     *
+     * @param key The key of the connection
+     * @throws IOException If the connection fails
+     */
+    private void write(SelectionKey key) throws IOException {
+        GameConnection game = (GameConnection)key.attachment();
+        SocketChannel channel = (SocketChannel)key.channel();
+        ByteBuffer output;
+        while ((output = game.output.peek()) != null) {
+            channel.write(output);
+            if (output.hasRemaining()) {
+                // The socket is full, wait until it can take more
+                return;
+            }
+            game.output.poll();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        if (game.finished) {
+            close(key);
+        }
+    }
+
+    /**
+     * Close a connection and forget its game
+     *
+     * @param key The key of the connection
+     */
+    private void close(SelectionKey key) {
+        GameConnection game = (GameConnection)key.attachment();
+        if (game != null && !game.closed) {
+            games--;
+            boolean idle;
+            synchronized (game) {
+                game.closed = true;
+                idle = !game.running;
+                game.running = true;
+            }
+            // The worker that has the game ends it, or a new one if no worker has it
+            if (idle) {
+                try {
+                    workers.execute(() -> play(game));
+                } catch (RejectedExecutionException e) {
+                    // The server is stopping
+                }
+            }
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Give a game to a worker if it has lines to handle and no worker has it
+     *
+     * @param game The game
+     */
+    private void schedule(GameConnection game) {
+        synchronized (game) {
+            if (game.running || game.lines.isEmpty()) {
+                return;
+            }
+            game.running = true;
+        }
+        workers.execute(() -> play(game));
+    }
+
+    /**
+     * Handle the lines of a game in order, then send what the game wrote
+     *
+     * @param game The game
+     */
+    private void play(GameConnection game) {
+        while (true) {
+            String line;
+            synchronized (game) {
+                line = game.closed ? null : game.lines.poll();
+                if (line == null) {
+                    if (game.closed && !game.ending) {
+                        // The client left before the end of the game
+                        game.endJournal(BoardState.ONGOING);
+                    }
+                    game.running = false;
+                    return;
+                }
+            }
+            boolean answer = false;
+            try {
+                answer = game.clientMove(line);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                game.ending = true;
+            }
+            if (!answer) {
+                send(game);
+            } else if (game.pacing.paced()) {
+                // The game keeps its worker flag so its next lines wait, but the worker is free during the pause
+                game.pacing.schedule(() -> resume(game));
+                return;
+            } else {
+                serverMove(game);
+            }
+        }
+    }
+
+    /**
+     * Make the move of the server after the pause and go on with the lines
+     * of the game
+     *
+     * @param game The game
+     */
+    private void resume(GameConnection game) {
+        try {
+            workers.execute(() -> {
+                serverMove(game);
+                play(game);
+            });
+        } catch (RejectedExecutionException e) {
+            // The server was stopped during the pause
+        }
+    }
+
+    /**
+     * Make the move of the server and send it
+     *
+     * @param game The game
+     */
+    private void serverMove(GameConnection game) {
+        try {
+            game.pcMove();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            game.ending = true;
+        }
+        send(game);
+    }
+
+    /**
+     * Give the bytes written by a game to the selector thread
+     *
+     * @param game The game
+     */
+    private void send(GameConnection game) {
+        game.flush();
+        // Only now the result is in the bytes to send, the selector may close the connection after them
+        if (game.ending) {
+            game.finished = true;
+        }
+        readyToWrite.add(game);
+        selector.wakeup();
+    }
+
+    /**
+     * The game of one connection. It extends notchess in the same way
+     * ServerChess does, but it writes to a buffer instead of a socket, and
+     * the server sends the buffer when the channel can take it.
+     */
+    static class GameConnection extends notchess {
+
+        // The key of the connection in the selector
+        SelectionKey key;
+        // The bytes read from the client
+        final ByteBuffer input = ByteBuffer.allocate(MAX_LINE);
+        // The part of the line read so far (used by the selector thread only)
+        final StringBuilder line = new StringBuilder();
+        // Set when the first byte of the client was read
+        boolean started;
+        // The first byte of a binary message read so far, or NO_BYTE, or VERSION_BYTE if the version comes next
+        int high = NO_BYTE;
+        // The full lines waiting to be handled
+        final ArrayDeque<String> lines = new ArrayDeque<String>();
+        // Set while a worker handles the lines
+        boolean running;
+        // The bytes written by the game that were not sent yet
+        final ConcurrentLinkedQueue<ByteBuffer> output = new ConcurrentLinkedQueue<ByteBuffer>();
+        // The bytes written by the game since the last flush
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        // Set by the worker when the game ended, so no more moves are made (used by the workers only)
+        boolean ending;
+        // Set when the result is in the bytes to send, the connection closes after sending them
+        volatile boolean finished;
+        // Set when the connection was closed, the worker that has the game ends it
+        volatile boolean closed;
+
+        /**
+         * Constructor of a game without graphics
+         */
+        GameConnection() {
+            super();
+            // The label is never shown, it only receives the messages of the game
+            moveLabel = new JLabel();
+            // Text until the first byte of the client says otherwise
+            clientConnection = MoveProtocol.text(null, written);
+            setUpBoard();
+        }
+
+        /**
+         * Store a line sent by the client
+         *
+         * @param text The line without the end of line
+         */
+        synchronized void received(String text) {
+            lines.add(text);
+        }
+
+        /**
+         * Make the move of the client, in the same way as ServerChess. The
+         * result of the game or the invalid move message are written at once.
+         *
+         * @param text The move of the client
+         * @return True if the server has to answer with its move
+         */
+        boolean clientMove(String text) {
+            if (ending) return false;
+            move = text;
+            clientTurn = true;
+            doAndValidateMove();
+            // Check if game finished
+            if (finishgame != null) {
+                try {
+                    // Send game results to client
+                    clientConnection.send(finishgame);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                ending = true;
+                return false;
+            }
+            if (clientInvalidMove != null) {
+                // Write the message that the move was invalid
+                pcMove();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Move the bytes written by the game to the bytes to send
+         */
+        void flush() {
+            if (written.size() > 0) {
+                output.add(ByteBuffer.wrap(written.toByteArray()));
+                written.reset();
+            }
+        }
+    }
+}
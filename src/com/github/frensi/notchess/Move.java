@@ -0,0 +1,179 @@
+package com.github.frensi.notchess;
+
+/**
+ * Helper methods for moves packed in an int. The bits of a move are:
+ *
+ *   0-5   the square where the piece was
+ *   6-11  the square where the piece moves
+ *   12-15 the piece that moves (index of the bitboard)
+ *   16-19 the captured piece plus one (0 if nothing is captured)
+ *   20    set if a pawn is promoted to a queen
+ *
+ * Moves are only turned into text like "QD1H5" to show them to the user or
+ * to send them over the network.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public final class Move {
+
+    // Value used when there is no move
+    public static final int NONE = 0;
+    // Flag set when a pawn is promoted to a queen
+    public static final int PROMOTION = 1 << 20;
+
+    /**
+     * No objects of this class are needed
+     */
+    private Move() {
+
+    }
+
+    /**
+     * Pack a move in an int
+     *
+     * @param from The square where the piece is
+     * @param to The square where the piece moves
+     * @param piece The piece that moves
+     * @param captured The piece that is captured, or BoardState.EMPTY
+     * @param promotion True if a pawn is promoted to a queen
+     * @return The move
+     */
+    public static int encode(int from, int to, int piece, int captured, boolean promotion) {
+        return from | (to << 6) | (piece << 12) | ((captured + 1) << 16) | (promotion ? PROMOTION : 0);
+    }
+
+    /**
+     * Returns the square where the piece was
+     *
+     * @param move The move
+     * @return The square
+     */
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    /**
+     * Returns the square where the piece moves
+     *
+     * @param move The move
+     * @return The square
+     */
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /**
+     * Returns the piece that moves
+     *
+     * @param move The move
+     * @return The index of the piece
+     */
+    public static int piece(int move) {
+        return (move >>> 12) & 15;
+    }
+
+    /**
+     * Returns the piece that is captured
+     *
+     * @param move The move
+     * @return The index of the piece, or BoardState.EMPTY
+     */
+    public static int captured(int move) {
+        return ((move >>> 16) & 15) - 1;
+    }
+
+    /**
+     * Check if the move captures a piece
+     *
+     * @param move The move
+     * @return True if a piece is captured, false otherwise
+     */
+    public static boolean isCapture(int move) {
+        return (move & (15 << 16)) != 0;
+    }
+
+    /**
+     * Check if the move promotes a pawn
+     *
+     * @param move The move
+     * @return True if a pawn is promoted, false otherwise
+     */
+    public static boolean isPromotion(int move) {
+        return (move & PROMOTION) != 0;
+    }
+
+    /**
+     * Check if a pawn moving to a square is promoted
+     *
+     * @param piece The piece that moves
+     * @param to The square where the piece moves
+     * @return True if the piece is a pawn reaching the last row
+     */
+    public static boolean promotes(int piece, int to) {
+        if (BoardState.typeOf(piece) != BoardState.PAWN) {
+            return false;
+        }
+        return BoardState.colorOf(piece) == BoardState.WHITE ? to < 8 : to >= 56;
+    }
+
+    /**
+     * Read a move written like "QD1H5" for the player that has to move
+     *
+     * @param text The text of the move
+     * @param board The board where the move is made
+     * @return The move, or NONE if the text is not a move
+     */
+    public static int parse(String text, BoardState board) {
+        // Check move format
+        if (text == null || text.length() != 5) {
+            return NONE;
+        }
+        return parse(text, 0, board);
+    }
+
+    /**
+     * Read a move written like "QD1H5" inside a longer text, without
+     * copying it
+     *
+     * @param text The text
+     * @param offset The first of the five letters of the move
+     * @param board The board where the move is made
+     * @return The move, or NONE if the letters are not a move
+     */
+    public static int parse(CharSequence text, int offset, BoardState board) {
+        int type = BoardState.PIECE_NAMES.indexOf(text.charAt(offset));
+        int prevCol = text.charAt(offset + 1) - 'A';
+        int prevRow = text.charAt(offset + 2) - '1';
+        int newCol = text.charAt(offset + 3) - 'A';
+        int newRow = text.charAt(offset + 4) - '1';
+        if (type < 0 || (prevCol | prevRow | newCol | newRow) < 0 || prevCol > 7 || prevRow > 7 || newCol > 7 || newRow > 7) {
+            return NONE;
+        }
+
+        int from = BoardState.square(7-prevRow, prevCol);
+        int to = BoardState.square(7-newRow, newCol);
+        if (from == to) {
+            return NONE;
+        }
+        int piece = BoardState.piece(board.whiteTurn ? BoardState.WHITE : BoardState.BLACK, type);
+        return encode(from, to, piece, board.pieceAt(to), promotes(piece, to));
+    }
+
+    /**
+     * Write a move like "QD1H5"
+     *
+     * @param move The move
+     * @return The text of the move
+     */
+    public static String toString(int move) {
+        int from = from(move);
+        int to = to(move);
+        char[] text = {
+            BoardState.PIECE_NAMES.charAt(BoardState.typeOf(piece(move))),
+            (char)('A' + from % 8), (char)('8' - from / 8),
+            (char)('A' + to % 8), (char)('8' - to / 8)
+        };
+        return new String(text);
+    }
+}
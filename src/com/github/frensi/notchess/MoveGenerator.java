@@ -0,0 +1,188 @@
+package com.github.frensi.notchess;
+
+/**
+ * Generates all the legal moves of a player. In notchess a player that can
+ * capture has to capture, so when there is at least one capture only the
+ * captures are legal.
+ *
+ * The moves are added to a MoveList given by the caller, so the same list
+ * can be used again for every position.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public final class MoveGenerator {
+
+    /**
+     * No objects of this class are needed
+     */
+    private MoveGenerator() {
+
+    }
+
+    /**
+     * Generate every legal move of a player
+     *
+     * @param board The board of the game
+     * @param side The player (BoardState.WHITE or BoardState.BLACK)
+     * @param moves The list where the moves are stored (it is cleared first)
+     */
+    public static void generateLegal(BoardState board, int side, MoveList moves) {
+        moves.clear();
+        // If there is any capture, it has to be made
+        if (board.captureForced(side)) {
+            generateCaptures(board, side, moves);
+        } else {
+            generateQuiet(board, side, moves);
+        }
+    }
+
+    /**
+     * Check if a player has at least one legal move, without generating the
+     * moves. It stops at the first piece that can move.
+     *
+     * @param board The board of the game
+     * @param side The player (BoardState.WHITE or BoardState.BLACK)
+     * @return True if the player can move, false otherwise
+     */
+    public static boolean hasLegalMove(BoardState board, int side) {
+        // A capture is always a legal move
+        if (board.captureForced(side)) {
+            return true;
+        }
+        long empty = ~board.occupied();
+
+        // A pawn can move if the square in front of it is empty
+        long pawns = board.bitboards[BoardState.piece(side, BoardState.PAWN)];
+        long pushes = side == BoardState.WHITE ? pawns >>> 8 : pawns << 8;
+        if ((pushes & empty) != 0) {
+            return true;
+        }
+
+        // The other pieces can move if they attack an empty square
+        for (int type = BoardState.KNIGHT; type <= BoardState.KING; type++) {
+            long pieces = board.bitboards[BoardState.piece(side, type)];
+            while (pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                if ((board.attacksFrom(from) & empty) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if a move is one of the legal moves of the player that has to
+     * move, without generating the moves
+     *
+     * @param board The board of the game
+     * @param move The move (see Move)
+     * @return True if generateLegal would give the move, false otherwise
+     */
+    public static boolean isLegal(BoardState board, int move) {
+        int side = board.whiteTurn ? BoardState.WHITE : BoardState.BLACK;
+        // If there is any capture, only the captures are legal
+        if (board.captureForced(side)) {
+            return board.isCapture(move);
+        }
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = Move.piece(move);
+        if (BoardState.colorOf(piece) != side || board.pieceAt(from) != piece || Move.isCapture(move)
+            || board.pieceAt(to) != BoardState.EMPTY || Move.isPromotion(move) != Move.promotes(piece, to)) {
+            return false;
+        }
+        if (BoardState.typeOf(piece) != BoardState.PAWN) {
+            return (board.attacksFrom(from) & (1L << to)) != 0;
+        }
+        // Pawns move one square forward, or two from the start if both squares are empty
+        int forward = side == BoardState.WHITE ? -8 : 8;
+        int startRow = side == BoardState.WHITE ? 6 : 1;
+        return to == from + forward
+            || (to == from + 2 * forward && from / 8 == startRow && board.pieceAt(from + forward) == BoardState.EMPTY);
+    }
+
+    /**
+     * Generate the moves of a player that capture a piece
+     *
+     * @param board The board of the game
+     * @param side The player (BoardState.WHITE or BoardState.BLACK)
+     * @param moves The list where the moves are added
+     */
+    public static void generateCaptures(BoardState board, int side, MoveList moves) {
+        long opponent = board.occupancy(1 - side);
+        // Only the pieces that attack an opponent piece can capture
+        if ((board.attacks(side) & opponent) == 0) {
+            return;
+        }
+        for (int type = BoardState.PAWN; type <= BoardState.KING; type++) {
+            int piece = BoardState.piece(side, type);
+            long pieces = board.bitboards[piece];
+            while (pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                addMoves(board, piece, from, board.attacksFrom(from) & opponent, moves);
+            }
+        }
+    }
+
+    /**
+     * Generate the moves of a player that do not capture a piece
+     *
+     * @param board The board of the game
+     * @param side The player (BoardState.WHITE or BoardState.BLACK)
+     * @param moves The list where the moves are added
+     */
+    public static void generateQuiet(BoardState board, int side, MoveList moves) {
+        long occupied = board.occupied();
+        long empty = ~occupied;
+
+        // Pawns move one square forward, or two from the start if both squares are empty
+        int pawn = BoardState.piece(side, BoardState.PAWN);
+        long pawns = board.bitboards[pawn];
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            int to = side == BoardState.WHITE ? from - 8 : from + 8;
+            if ((empty & (1L << to)) == 0) {
+                continue;
+            }
+            moves.add(Move.encode(from, to, pawn, BoardState.EMPTY, Move.promotes(pawn, to)));
+            int startRow = side == BoardState.WHITE ? 6 : 1;
+            int twoSteps = side == BoardState.WHITE ? from - 16 : from + 16;
+            if (from / 8 == startRow && (empty & (1L << twoSteps)) != 0) {
+                moves.add(Move.encode(from, twoSteps, pawn, BoardState.EMPTY, false));
+            }
+        }
+
+        // The other pieces move to any empty square they attack
+        for (int type = BoardState.KNIGHT; type <= BoardState.KING; type++) {
+            int piece = BoardState.piece(side, type);
+            long pieces = board.bitboards[piece];
+            while (pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                addMoves(board, piece, from, board.attacksFrom(from) & empty, moves);
+            }
+        }
+    }
+
+    /**
+     * Add the moves of a piece to each target square
+     *
+     * @param board The board of the game
+     * @param piece The piece that moves
+     * @param from The square of the piece
+     * @param targets The bitboard of the squares where the piece moves
+     * @param moves The list where the moves are added
+     */
+    private static void addMoves(BoardState board, int piece, int from, long targets, MoveList moves) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves.add(Move.encode(from, to, piece, board.pieceAt(to), Move.promotes(piece, to)));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.frensi.notchess;
+
+/**
+ * A reusable list of moves packed in ints (see Move). The list is cleared
+ * and filled again instead of creating new lists for every position.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public class MoveList {
+
+    // The moves stored in the list
+    public final int[] moves = new int[256];
+    // The number of moves in the list
+    public int size;
+
+    /**
+     * Remove all the moves from the list
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Add a move to the list
+     *
+     * @param move The move to add
+     */
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    /**
+     * Returns a move of the list
+     *
+     * @param index The index of the move
+     * @return The move
+     */
+    public int get(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Check if the list has no moves
+     *
+     * @return True if empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Check if a move is in the list
+     *
+     * @param move The move to look for
+     * @return True if the move is in the list, false otherwise
+     */
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
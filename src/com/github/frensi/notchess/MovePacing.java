@@ -0,0 +1,181 @@
+package com.github.frensi.notchess;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long a server waits before it plays its move. A game of two programs
+ * does not need to wait at all, a game against a person looks better with a
+ * pause (always the same or random), and the pc can also take its time by
+ * searching up to a number of positions instead of waiting.
+ *
+ * The pauses of all the games are timed by one shared scheduler thread, so a
+ * game that waits does not keep a thread of its own sleeping.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public class MovePacing {
+
+    // Play at once
+    public static final MovePacing NONE = new MovePacing(0, 0, 0);
+    // The pause the server always made before its moves
+    public static final MovePacing TWO_SECONDS = fixed(2000);
+
+    // Times the pauses of every game
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "notchess-pacing");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The shortest and the longest pause in milliseconds
+    private final long minMillis;
+    private final long maxMillis;
+    // The positions the pc searches for its move, or 0 for no limit
+    private final long nodeLimit;
+
+    /**
+     * Constructor of the pacing
+     *
+     * @param minMillis The shortest pause in milliseconds
+     * @param maxMillis The longest pause in milliseconds
+     * @param nodeLimit The positions the pc searches for its move, or 0 for no limit
+     */
+    private MovePacing(long minMillis, long maxMillis, long nodeLimit) {
+        if (minMillis < 0 || maxMillis < minMillis || nodeLimit < 0) {
+            throw new IllegalArgumentException("Invalid pacing: " + minMillis + "-" + maxMillis + " ms, " + nodeLimit + " nodes");
+        }
+        this.minMillis = minMillis;
+        this.maxMillis = maxMillis;
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Create a pacing that always waits the same time
+     *
+     * @param millis The pause in milliseconds
+     * @return The pacing
+     */
+    public static MovePacing fixed(long millis) {
+        return new MovePacing(millis, millis, 0);
+    }
+
+    /**
+     * Create a pacing that waits a random time, like a person thinking
+     *
+     * @param minMillis The shortest pause in milliseconds
+     * @param maxMillis The longest pause in milliseconds
+     * @return The pacing
+     */
+    public static MovePacing random(long minMillis, long maxMillis) {
+        return new MovePacing(minMillis, maxMillis, 0);
+    }
+
+    /**
+     * Create a pacing that does not wait, the pc takes its time searching up
+     * to a number of positions instead
+     *
+     * @param nodes The positions searched for every move
+     * @return The pacing
+     */
+    public static MovePacing searchBudget(long nodes) {
+        return new MovePacing(0, 0, nodes);
+    }
+
+    /**
+     * Read a pacing written as a pause in milliseconds (2000), a random pause
+     * (500-3000) or N followed by the positions searched (N200000)
+     *
+     * @param text The pacing
+     * @return The pacing
+     */
+    public static MovePacing parse(String text) {
+        if (text.startsWith("N")) {
+            return searchBudget(Long.parseLong(text.substring(1)));
+        }
+        int dash = text.indexOf('-');
+        if (dash > 0) {
+            return random(Long.parseLong(text.substring(0, dash)), Long.parseLong(text.substring(dash + 1)));
+        }
+        return fixed(Long.parseLong(text));
+    }
+
+    /**
+     * Returns true if the server waits before its moves
+     *
+     * @return True if there is a pause
+     */
+    public boolean paced() {
+        return maxMillis > 0;
+    }
+
+    /**
+     * Returns the pause before the next move
+     *
+     * @return The pause in milliseconds
+     */
+    public long delayMillis() {
+        if (maxMillis == minMillis) {
+            return minMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(minMillis, maxMillis + 1);
+    }
+
+    /**
+     * Returns the positions the pc searches for its move
+     *
+     * @return The positions, or 0 for no limit
+     */
+    public long nodeLimit() {
+        return nodeLimit;
+    }
+
+    /**
+     * Run a task after the pause, in the scheduler thread. The task should
+     * be short, or give the work to other threads.
+     *
+     * @param task The task
+     */
+    public void schedule(Runnable task) {
+        long delay = delayMillis();
+        if (delay == 0) {
+            task.run();
+        } else {
+            SCHEDULER.schedule(task, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Wait for the pause, for the games that are played by a thread of their
+     * own. A virtual thread that waits here does not hold a thread of the
+     * system.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public void await() throws InterruptedException {
+        long delay = delayMillis();
+        if (delay == 0) {
+            return;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        SCHEDULER.schedule(done::countDown, delay, TimeUnit.MILLISECONDS);
+        done.await();
+    }
+
+    /**
+     * Returns the pacing as text, in the same way it is read by parse
+     *
+     * @return The text of the pacing
+     */
+    @Override
+    public String toString() {
+        if (nodeLimit > 0) {
+            return "N" + nodeLimit;
+        }
+        return maxMillis == minMillis ? Long.toString(minMillis) : minMillis + "-" + maxMillis;
+    }
+}
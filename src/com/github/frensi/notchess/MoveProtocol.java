@@ -0,0 +1,328 @@
+package com.github.frensi.notchess;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * How the moves and the messages of a game travel between the client and
+ * the server. The game only sends and receives text (moves like "QD1H5" and
+ * messages like "INVALID MOVE"), and the protocol decides how the text is
+ * written on the connection:
+ *
+ *   Text   one line of text for each message, as ServerChess and ClientChess
+ *          always did. It is kept for the clients that only know this way.
+ *   Binary two bytes for each message. A move is the square where the piece
+ *          was (bits 0-5), the square where it moves (bits 6-11) and the type
+ *          of the piece (bits 12-14); a message has bit 15 set and its code
+ *          in the low bits (see MESSAGES).
+ *
+ * Both ways write every message into a buffer and flush it at once, so a
+ * message is one write on the socket instead of one for every byte, and the
+ * sockets are made with TCP_NODELAY so the small messages are not delayed.
+ *
+ * The server always starts with the line "Please Move". A binary client
+ * answers with MAGIC and the version of the protocol before its first move;
+ * MAGIC is not a letter, so the server knows a text client from the first
+ * byte it receives.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public abstract class MoveProtocol {
+
+    // The first byte a binary client sends
+    public static final int MAGIC = 0xB7;
+    // The version of the binary protocol
+    public static final int VERSION = 1;
+    // The message the server sends when the game starts
+    public static final String PLEASE_MOVE = "Please Move";
+    // The messages that are not moves, the code of each one is its index
+    public static final String[] MESSAGES = {PLEASE_MOVE, "INVALID MOVE", "NEED TO CAPTURE",
+        BoardState.RESULT_NAMES[BoardState.WHITE_WINS], BoardState.RESULT_NAMES[BoardState.BLACK_WINS],
+        BoardState.RESULT_NAMES[BoardState.TIE]};
+    // The bit set in the binary messages that are not moves
+    private static final int MESSAGE_FLAG = 0x8000;
+    // The size of the buffers of the streams
+    private static final int BUFFER_SIZE = 512;
+
+    // The bytes received, or null if the protocol only sends
+    protected final InputStream in;
+    // The bytes to send, flushed after every message
+    protected final OutputStream out;
+
+    /**
+     * Constructor of the protocol
+     *
+     * @param in The bytes received, or null if the protocol only sends
+     * @param out The bytes to send
+     */
+    protected MoveProtocol(InputStream in, OutputStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * Send a move or a message and flush it
+     *
+     * @param message The text of the move or the message
+     * @throws IOException If the connection fails
+     */
+    public abstract void send(String message) throws IOException;
+
+    /**
+     * Wait for the next move or message
+     *
+     * @return The text of the move or the message, or null if the connection was closed
+     * @throws IOException If the connection fails
+     */
+    public abstract String receive() throws IOException;
+
+    /**
+     * Returns true if the messages are binary
+     *
+     * @return True for the binary protocol, false for text
+     */
+    public abstract boolean binary();
+
+    /**
+     * Create the text protocol on a pair of streams
+     *
+     * @param in The bytes received, or null if the protocol only sends
+     * @param out The bytes to send
+     * @return The protocol
+     */
+    public static MoveProtocol text(InputStream in, OutputStream out) {
+        return new Text(in, new BufferedOutputStream(out, BUFFER_SIZE));
+    }
+
+    /**
+     * Create the binary protocol on a pair of streams
+     *
+     * @param in The bytes received, or null if the protocol only sends
+     * @param out The bytes to send
+     * @return The protocol
+     */
+    public static MoveProtocol binary(InputStream in, OutputStream out) {
+        return new Binary(in, new BufferedOutputStream(out, BUFFER_SIZE));
+    }
+
+    /**
+     * Start the game of the server on a new connection: send "Please Move"
+     * and find which protocol the client talks
+     *
+     * @param socket The connection to the client
+     * @return The protocol of the client
+     * @throws IOException If the connection fails or the version is not known
+     */
+    public static MoveProtocol accept(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        InputStream in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+        OutputStream out = socket.getOutputStream();
+        // Send initial message
+        text(null, out).send(PLEASE_MOVE);
+        in.mark(1);
+        int first = in.read();
+        if (first != MAGIC) {
+            // A text client, the byte is the start of its first move
+            in.reset();
+            return text(in, out);
+        }
+        checkVersion(in.read());
+        return binary(in, out);
+    }
+
+    /**
+     * Start the game of the client: wait for "Please Move" and tell the
+     * server which protocol the client talks
+     *
+     * @param socket The connection to the server
+     * @param binary True for the binary protocol, false for text
+     * @return The protocol
+     * @throws IOException If the connection fails
+     */
+    public static MoveProtocol connect(Socket socket, boolean binary) throws IOException {
+        socket.setTcpNoDelay(true);
+        InputStream in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+        OutputStream out = socket.getOutputStream();
+        // Wait for the server to send the initial message
+        String start;
+        do {
+            start = readLine(in);
+            if (start == null) {
+                throw new EOFException("The server closed the connection");
+            }
+        } while (!start.equals(PLEASE_MOVE));
+        if (!binary) {
+            return text(in, out);
+        }
+        // The header goes in the buffer and is sent with the first move
+        MoveProtocol protocol = binary(in, out);
+        protocol.out.write(MAGIC);
+        protocol.out.write(VERSION);
+        return protocol;
+    }
+
+    /**
+     * Check the version sent by a binary client
+     *
+     * @param version The version
+     * @throws IOException If the version is not known
+     */
+    public static void checkVersion(int version) throws IOException {
+        if (version != VERSION) {
+            throw new IOException("Unknown protocol version " + version);
+        }
+    }
+
+    /**
+     * Returns the two bytes of a move or a message
+     *
+     * @param message The text of the move or the message
+     * @return The bytes, or -1 if the text is not a move nor a message
+     */
+    public static int encode(String message) {
+        for (int code = 0; code < MESSAGES.length; code++) {
+            if (MESSAGES[code].equals(message)) {
+                return MESSAGE_FLAG | code;
+            }
+        }
+        if (message == null || message.length() != 5) {
+            return -1;
+        }
+        int type = BoardState.PIECE_NAMES.indexOf(message.charAt(0));
+        int fromCol = message.charAt(1) - 'A';
+        int fromRow = '8' - message.charAt(2);
+        int toCol = message.charAt(3) - 'A';
+        int toRow = '8' - message.charAt(4);
+        if (type < 0 || ((fromCol | fromRow | toCol | toRow) & ~7) != 0) {
+            return -1;
+        }
+        return BoardState.square(fromRow, fromCol) | BoardState.square(toRow, toCol) << 6 | type << 12;
+    }
+
+    /**
+     * Returns the text of the two bytes of a move or a message
+     *
+     * @param frame The bytes
+     * @return The text, which is not a valid move if the bytes are not known
+     */
+    public static String decode(int frame) {
+        if ((frame & MESSAGE_FLAG) != 0) {
+            int code = frame & ~MESSAGE_FLAG;
+            return code < MESSAGES.length ? MESSAGES[code] : "";
+        }
+        int type = frame >>> 12;
+        if (type >= BoardState.PIECE_NAMES.length()) {
+            return "";
+        }
+        int from = frame & 0x3F;
+        int to = (frame >>> 6) & 0x3F;
+        char[] text = {
+            BoardState.PIECE_NAMES.charAt(type),
+            (char)('A' + from % 8), (char)('8' - from / 8),
+            (char)('A' + to % 8), (char)('8' - to / 8)
+        };
+        return new String(text);
+    }
+
+    /**
+     * Read a line of text, without the end of the line
+     *
+     * @param in The bytes received
+     * @return The line, or null if the connection was closed before it
+     * @throws IOException If the connection fails
+     */
+    static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                return line.length() == 0 ? null : line.toString();
+            }
+            if (c != '\r') {
+                line.append((char)c);
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * The protocol of one line of text for each message
+     */
+    private static class Text extends MoveProtocol {
+
+        /**
+         * Constructor of the protocol
+         *
+         * @param in The bytes received, or null if the protocol only sends
+         * @param out The buffered bytes to send
+         */
+        Text(InputStream in, OutputStream out) {
+            super(in, out);
+        }
+
+        @Override
+        public void send(String message) throws IOException {
+            out.write((message + "\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+        }
+
+        @Override
+        public String receive() throws IOException {
+            return readLine(in);
+        }
+
+        @Override
+        public boolean binary() {
+            return false;
+        }
+    }
+
+    /**
+     * The protocol of two bytes for each message
+     */
+    private static class Binary extends MoveProtocol {
+
+        /**
+         * Constructor of the protocol
+         *
+         * @param in The bytes received, or null if the protocol only sends
+         * @param out The buffered bytes to send
+         */
+        Binary(InputStream in, OutputStream out) {
+            super(in, out);
+        }
+
+        @Override
+        public void send(String message) throws IOException {
+            int frame = encode(message);
+            if (frame < 0) {
+                throw new IOException("Not a move nor a message: " + message);
+            }
+            out.write(frame >>> 8);
+            out.write(frame);
+            out.flush();
+        }
+
+        @Override
+        public String receive() throws IOException {
+            int high = in.read();
+            int low = in.read();
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            return decode(high << 8 | low);
+        }
+
+        @Override
+        public boolean binary() {
+            return true;
+        }
+    }
+}
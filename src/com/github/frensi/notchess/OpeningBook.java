@@ -0,0 +1,325 @@
+package com.github.frensi.notchess;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The moves played at the start of many games, with how each one ended, so
+ * the pc can play the first moves without searching.
+ *
+ * The book is built once from an archive of games (see GameArchive). For the
+ * first moves of every game it counts, for each position and move, the games
+ * the player that made the move won, tied and lost. In notchess a player wins
+ * by losing all its pieces, so these are the wins of the rules, not the games
+ * where the player kept more pieces.
+ *
+ * The file has a header and then one entry for each position and move,
+ * sorted by the hash of the position (see Zobrist) and then by the move:
+ *
+ *   header  MAGIC, VERSION, the plies of every game in the book, the entries
+ *   entry   hash (8 bytes), move (4), wins (4), ties (4), losses (4)
+ *
+ * The file is mapped in memory and never read into the heap. Finding a
+ * position is a binary search over the entries, a few pages that the
+ * operating system keeps in memory after the first games.
+ *
+ * Run it as java com.github.frensi.notchess.OpeningBook followed by the
+ * archive, the file of the book, the plies of every game to keep (12 by
+ * default) and the fewest games a move needs to be kept (2 by default).
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public class OpeningBook {
+
+    // The first int of a book
+    public static final int MAGIC = 0x4E43424B;
+    // The version of the file
+    public static final int VERSION = 1;
+    // The bytes of the header and of each entry
+    public static final int HEADER_BYTES = 16;
+    public static final int ENTRY_BYTES = 24;
+
+    // The entries of the book
+    private final MappedByteBuffer entries;
+    // The number of entries
+    private final int count;
+    // The plies of every game in the book
+    private final int plies;
+
+    /**
+     * Open a book
+     *
+     * @param path The file of the book
+     * @throws IOException If the file can not be read or it is not a book
+     */
+    public OpeningBook(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (entries.capacity() < HEADER_BYTES || entries.getInt(0) != MAGIC || entries.getInt(4) != VERSION) {
+            throw new IOException("Not an opening book: " + path);
+        }
+        plies = entries.getInt(8);
+        count = entries.getInt(12);
+        if ((long)count * ENTRY_BYTES + HEADER_BYTES != entries.capacity()) {
+            throw new IOException("The opening book is not complete: " + path);
+        }
+    }
+
+    /**
+     * Returns the plies of every game kept in the book
+     *
+     * @return The plies
+     */
+    public int plies() {
+        return plies;
+    }
+
+    /**
+     * Returns the number of positions and moves in the book
+     *
+     * @return The entries
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Find the move of the book with the best score for the player that has
+     * to move: its wins plus half its ties, out of its games (with one win and
+     * one loss more, so a move played once does not look perfect)
+     *
+     * @param board The board of the game
+     * @return The move, or Move.NONE if the position is not in the book
+     */
+    public int probe(BoardState board) {
+        // Only the first plies of the games are in the book, there is no need to look later
+        if (plyOf(board) >= plies) {
+            return Move.NONE;
+        }
+        int best = Move.NONE;
+        double bestScore = -1;
+        for (int index = firstEntry(board.hash); index < count && hash(index) == board.hash; index++) {
+            int at = HEADER_BYTES + index * ENTRY_BYTES;
+            int move = entries.getInt(at + 8);
+            long wins = entries.getInt(at + 12);
+            long ties = entries.getInt(at + 16);
+            long losses = entries.getInt(at + 20);
+            double score = (wins + ties / 2.0 + 1) / (wins + ties + losses + 2);
+            // Two positions can have the same hash, so the move has to be legal here
+            if (score > bestScore && MoveGenerator.isLegal(board, move)) {
+                best = move;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the number of moves made since the start of the game
+     *
+     * @param board The board of the game
+     * @return The plies
+     */
+    private static int plyOf(BoardState board) {
+        return (50 - board.movesLeft) * 2 + (board.whiteTurn ? 0 : 1);
+    }
+
+    /**
+     * Returns the hash of an entry
+     *
+     * @param index The entry
+     * @return The hash
+     */
+    private long hash(int index) {
+        return entries.getLong(HEADER_BYTES + index * ENTRY_BYTES);
+    }
+
+    /**
+     * Find the first entry with a hash, or where it would be
+     *
+     * @param hash The hash
+     * @return The index of the entry
+     */
+    private int firstEntry(long hash) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (hash(middle) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Build a book from the games of an archive
+     *
+     * @param archive The file of the archive
+     * @param book The file of the book
+     * @param plies The plies of every game to keep
+     * @param minGames The fewest games a move needs to be kept
+     * @return The number of entries written
+     * @throws IOException If a file can not be read or written
+     */
+    public static int build(Path archive, Path book, int plies, int minGames) throws IOException {
+        // One pair of longs for every move kept: the hash, and the move with the result for its player
+        long[] records = new long[1 << 16];
+        int size = 0;
+        BoardState board = new BoardState();
+        GameArchive.Game game = new GameArchive.Game();
+        try (GameArchive.Reader reader = new GameArchive.Reader(archive)) {
+            while (reader.next(game)) {
+                if (game.position != null) continue;
+                board.setUpBoard();
+                for (int i = 0; i < Math.min(plies, game.moves.size); i++) {
+                    int side = board.whiteTurn ? BoardState.WHITE : BoardState.BLACK;
+                    if (size + 2 > records.length) {
+                        records = Arrays.copyOf(records, records.length * 2);
+                    }
+                    records[size++] = board.hash;
+                    records[size++] = (long)game.moves.get(i) << 2 | outcome(game.result, side);
+                    board.applyMove(game.moves.get(i));
+                }
+            }
+        }
+        sort(records, 0, size / 2 - 1);
+
+        // Count the results of every position and move
+        int count = 0;
+        Path temporary = Paths.get(book + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(plies);
+            out.writeInt(0);
+            int i = 0;
+            while (i < size) {
+                long hash = records[i];
+                long move = records[i + 1] >>> 2;
+                int[] results = new int[3];
+                for (; i < size && records[i] == hash && records[i + 1] >>> 2 == move; i += 2) {
+                    results[(int)(records[i + 1] & 3)]++;
+                }
+                if (results[0] + results[1] + results[2] < minGames) continue;
+                out.writeLong(hash);
+                out.writeInt((int)move);
+                out.writeInt(results[0]);
+                out.writeInt(results[1]);
+                out.writeInt(results[2]);
+                count++;
+            }
+        }
+        // Write the number of entries in the header and put the book in its place
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, count), 12);
+        }
+        Files.move(temporary, book, StandardCopyOption.REPLACE_EXISTING);
+        return count;
+    }
+
+    /**
+     * Returns how a game ended for a player: 0 if it won, 1 if it tied and 2
+     * if it lost
+     *
+     * @param result The result (see BoardState.result)
+     * @param side The player
+     * @return The outcome
+     */
+    private static int outcome(int result, int side) {
+        if (result == BoardState.TIE || result == BoardState.ONGOING) {
+            return 1;
+        }
+        return result == (side == BoardState.WHITE ? BoardState.WHITE_WINS : BoardState.BLACK_WINS) ? 0 : 2;
+    }
+
+    /**
+     * Sort the pairs of longs of the records by hash and then by move
+     *
+     * @param records The records
+     * @param low The first pair to sort
+     * @param high The last pair to sort
+     */
+    private static void sort(long[] records, int low, int high) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long pivotHash = records[middle * 2];
+            long pivotMove = records[middle * 2 + 1] >>> 2;
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(records, i, pivotHash, pivotMove) < 0) i++;
+                while (compare(records, j, pivotHash, pivotMove) > 0) j--;
+                if (i <= j) {
+                    swap(records, i++, j--);
+                }
+            }
+            // Sort the smaller part first so the stack stays small
+            if (j - low < high - i) {
+                sort(records, low, j);
+                low = i;
+            } else {
+                sort(records, i, high);
+                high = j;
+            }
+        }
+    }
+
+    /**
+     * Compare a pair of the records with a hash and a move
+     *
+     * @param records The records
+     * @param pair The pair
+     * @param hash The hash
+     * @param move The move
+     * @return Less than 0, 0 or more than 0 if the pair goes before, with or after them
+     */
+    private static int compare(long[] records, int pair, long hash, long move) {
+        int byHash = Long.compare(records[pair * 2], hash);
+        return byHash != 0 ? byHash : Long.compare(records[pair * 2 + 1] >>> 2, move);
+    }
+
+    /**
+     * Swap two pairs of the records
+     *
+     * @param records The records
+     * @param a The first pair
+     * @param b The second pair
+     */
+    private static void swap(long[] records, int a, int b) {
+        for (int k = 0; k < 2; k++) {
+            long temp = records[a * 2 + k];
+            records[a * 2 + k] = records[b * 2 + k];
+            records[b * 2 + k] = temp;
+        }
+    }
+
+    /**
+     * Build a book from the command line
+     *
+     * @param args The archive, the book, the plies and the fewest games of a move
+     * @throws IOException If a file can not be read or written
+     */
+    public static void main(String args[]) throws IOException {
+        int plies = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+        int minGames = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        long start = System.nanoTime();
+        int entries = build(Paths.get(args[0]), Paths.get(args[1]), plies, minGames);
+        System.out.printf("%d entries written in %.1f s%n", entries, (System.nanoTime() - start) / 1e9);
+    }
+}
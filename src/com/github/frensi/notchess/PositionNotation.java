@@ -0,0 +1,230 @@
+package com.github.frensi.notchess;
+
+/**
+ * Writes and reads a position of notchess (the pieces, the player that moves
+ * and the moves left), as text or as a few bytes, so a position can be saved,
+ * sent to a client that connects again, used as the key of a cache or kept in
+ * an archive of games.
+ *
+ * The text is like the FEN of chess: the rows from rank 8 to rank 1 separated
+ * by '/', with a letter for each piece (upper case for white, lower case for
+ * black) and a number for each group of empty squares, then w or b for the
+ * player that moves and the moves left. The start of the game is
+ *
+ *   rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w 50
+ *
+ * The bytes are always BINARY_BYTES: the squares with a piece (8 bytes, the
+ * bits of the squares from 0 to 63), the piece on each of those squares in
+ * the order of the squares (half a byte each, room for 32 pieces, the pieces
+ * of a game), and the player that moves (the high bit) with the moves left.
+ * Two boards in the same position have the same bytes.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public final class PositionNotation {
+
+    // The bytes of a position
+    public static final int BINARY_BYTES = 25;
+    // The text of the start of the game
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w 50";
+
+    // The most pieces the bytes can hold
+    private static final int MAX_PIECES = 32;
+    // The most moves left of a game, as at its start
+    private static final int MAX_MOVES_LEFT = 50;
+    // The letter of each piece, indexed like the bitboards of the board
+    private static final String LETTERS = "PNBRQKpnbrqk";
+
+    /**
+     * No objects of this class are needed
+     */
+    private PositionNotation() {
+
+    }
+
+    /**
+     * Write a position as text
+     *
+     * @param board The board of the game
+     * @return The text of the position
+     */
+    public static String format(BoardState board) {
+        StringBuilder text = new StringBuilder(72);
+        for (int row = 0; row < 8; row++) {
+            if (row > 0) text.append('/');
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                int piece = board.pieceAt(BoardState.square(row, col));
+                if (piece == BoardState.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    text.append((char)('0' + empty));
+                    empty = 0;
+                }
+                text.append(LETTERS.charAt(piece));
+            }
+            if (empty > 0) text.append((char)('0' + empty));
+        }
+        text.append(board.whiteTurn ? " w " : " b ").append(board.movesLeft);
+        return text.toString();
+    }
+
+    /**
+     * Read a position written as text and put it on a board
+     *
+     * @param text The text of the position
+     * @param board The board where the position is put
+     * @throws IllegalArgumentException If the text is not a position, has a pawn on its
+     *         last row or more moves left than a game has
+     */
+    public static void parse(String text, BoardState board) {
+        long[] pieces = new long[12];
+        int length = text.length();
+        int index = 0;
+        int row = 0;
+        int col = 0;
+        // The pieces, until the space before the player
+        for (; index < length; index++) {
+            char c = text.charAt(index);
+            if (c == ' ') {
+                break;
+            } else if (c == '/') {
+                if (col != 8) throw invalid(text);
+                row++;
+                col = 0;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                int piece = LETTERS.indexOf(c);
+                if (piece < 0 || col > 7 || row > 7) throw invalid(text);
+                pieces[piece] |= 1L << BoardState.square(row, col);
+                col++;
+            }
+            if (col > 8) throw invalid(text);
+        }
+        if (row != 7 || col != 8 || index + 3 > length || text.charAt(index + 2) != ' ') {
+            throw invalid(text);
+        }
+        char player = text.charAt(index + 1);
+        if (player != 'w' && player != 'b') throw invalid(text);
+        int movesLeft = 0;
+        for (index += 3; index < length; index++) {
+            char c = text.charAt(index);
+            if (c < '0' || c > '9' || movesLeft > 100) throw invalid(text);
+            movesLeft = movesLeft * 10 + c - '0';
+        }
+        // 0 moves left is the last position of a game that ran out of moves
+        if (text.charAt(length - 1) == ' ' || movesLeft > MAX_MOVES_LEFT || promotedPawns(pieces)) {
+            throw invalid(text);
+        }
+        board.setPosition(pieces, player == 'w', movesLeft);
+    }
+
+    /**
+     * Write a position as bytes
+     *
+     * @param board The board of the game
+     * @param bytes Where the bytes are written
+     * @param offset The first byte written
+     * @throws IllegalArgumentException If the position has too many pieces or moves left,
+     *         or a pawn on its last row
+     */
+    public static void write(BoardState board, byte[] bytes, int offset) {
+        long occupied = board.occupied();
+        if (Long.bitCount(occupied) > MAX_PIECES) {
+            throw new IllegalArgumentException("The position does not fit in " + BINARY_BYTES + " bytes");
+        }
+        // The same positions as the text, so the bytes are read back
+        if (board.movesLeft < 0 || board.movesLeft > MAX_MOVES_LEFT || promotedPawns(board.bitboards)) {
+            throw new IllegalArgumentException("Not a position of a game: " + format(board));
+        }
+        for (int i = 0; i < 8; i++) {
+            bytes[offset + i] = (byte)(occupied >>> (56 - 8 * i));
+        }
+        // Two pieces in each byte, the empty places are 0
+        for (int i = 8; i < 8 + MAX_PIECES / 2; i++) {
+            bytes[offset + i] = 0;
+        }
+        int nibble = 0;
+        long squares = occupied;
+        while (squares != 0) {
+            int square = Long.numberOfTrailingZeros(squares);
+            squares &= squares - 1;
+            bytes[offset + 8 + nibble / 2] |= (byte)(board.pieceAt(square) << ((nibble & 1) * 4));
+            nibble++;
+        }
+        bytes[offset + 8 + MAX_PIECES / 2] = (byte)((board.whiteTurn ? 0 : 0x80) | board.movesLeft);
+    }
+
+    /**
+     * Write a position as bytes
+     *
+     * @param board The board of the game
+     * @return The BINARY_BYTES bytes of the position
+     */
+    public static byte[] toBytes(BoardState board) {
+        byte[] bytes = new byte[BINARY_BYTES];
+        write(board, bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Read a position written as bytes and put it on a board
+     *
+     * @param bytes The bytes
+     * @param offset The first byte of the position
+     * @param board The board where the position is put
+     * @throws IllegalArgumentException If the bytes are not a position
+     */
+    public static void read(byte[] bytes, int offset, BoardState board) {
+        long occupied = 0;
+        for (int i = 0; i < 8; i++) {
+            occupied = occupied << 8 | (bytes[offset + i] & 0xFF);
+        }
+        if (Long.bitCount(occupied) > MAX_PIECES) {
+            throw new IllegalArgumentException("Too many pieces in the bytes of the position");
+        }
+        long[] pieces = new long[12];
+        int nibble = 0;
+        long squares = occupied;
+        while (squares != 0) {
+            int square = Long.numberOfTrailingZeros(squares);
+            squares &= squares - 1;
+            int piece = (bytes[offset + 8 + nibble / 2] >>> ((nibble & 1) * 4)) & 0xF;
+            if (piece >= 12) {
+                throw new IllegalArgumentException("Unknown piece " + piece + " in the bytes of the position");
+            }
+            pieces[piece] |= 1L << square;
+            nibble++;
+        }
+        int last = bytes[offset + 8 + MAX_PIECES / 2] & 0xFF;
+        if ((last & 0x7F) > MAX_MOVES_LEFT || promotedPawns(pieces)) {
+            throw new IllegalArgumentException("The bytes are not a position of a game");
+        }
+        board.setPosition(pieces, (last & 0x80) == 0, last & 0x7F);
+    }
+
+    /**
+     * Check if a pawn is on its last row, where it would have been promoted
+     *
+     * @param pieces The bitboards of the pieces
+     * @return True if a white pawn is on row 0 or a black pawn on row 7
+     */
+    private static boolean promotedPawns(long[] pieces) {
+        return (pieces[BoardState.piece(BoardState.WHITE, BoardState.PAWN)] & 0xFFL) != 0
+            || (pieces[BoardState.piece(BoardState.BLACK, BoardState.PAWN)] & 0xFF00000000000000L) != 0;
+    }
+
+    /**
+     * Returns the error of a text that is not a position
+     *
+     * @param text The text
+     * @return The error
+     */
+    private static IllegalArgumentException invalid(String text) {
+        return new IllegalArgumentException("Not a position: " + text);
+    }
+}
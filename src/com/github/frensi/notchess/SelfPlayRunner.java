@@ -0,0 +1,260 @@
+package com.github.frensi.notchess;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.JLabel;
+
+import com.github.frensi.notchess.engine.Search;
+import com.github.frensi.notchess.engine.TranspositionTable;
+
+/**
+ * Plays many games of the computer against itself without graphics, to
+ * compare two ways of playing. The games are played by a pool of worker
+ * threads, each one with its own game, and every move goes through the same
+ * rules as the real game (doAndValidateMove and canMove). The result and
+ * the number of moves of every game are recorded, and the totals are
+ * printed with the games played per second.
+ *
+ * Each player searches a number of moves ahead, or moves randomly if the
+ * depth is 0. The first moves of every game are random, so two players that
+ * search do not play the same game every time.
+ *
+ * Run it as java com.github.frensi.notchess.notchess R followed by the
+ * number of games, the number of workers, the depth of white and the depth
+ * of black, and optionally a file where the games are written (see
+ * GameArchive).
+ *
+ * The class extends notchess to reach the game state, in the same way
+ * ServerChess and ClientChess do.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public class SelfPlayRunner extends notchess {
+
+    // The number of random moves at the start of every game
+    public static final int RANDOM_PLIES = 4;
+    // The size of the table of each player of a worker
+    public static final int TABLE_MEGABYTES = 4;
+
+    // The moves searched ahead by each player (WHITE and BLACK), 0 for random moves
+    private final int[] depths;
+    // The search of each player, or null for random moves
+    private final Search[] searches = new Search[2];
+    // The random moves of this worker
+    private final Random random;
+    // The moves and the result of the last game played
+    final GameArchive.Game record = new GameArchive.Game();
+
+    /**
+     * Constructor of a worker without graphics
+     *
+     * @param whiteDepth The moves searched ahead by white, 0 for random moves
+     * @param blackDepth The moves searched ahead by black, 0 for random moves
+     * @param seed The seed of the random moves
+     */
+    public SelfPlayRunner(int whiteDepth, int blackDepth, long seed) {
+        super();
+        // The label is never shown, it only receives the messages of the game
+        moveLabel = new JLabel();
+        depths = new int[] {whiteDepth, blackDepth};
+        for (int side = BoardState.WHITE; side <= BoardState.BLACK; side++) {
+            if (depths[side] > 0) {
+                searches[side] = new Search(TranspositionTable.ofMegabytes(TABLE_MEGABYTES));
+            }
+        }
+        random = new Random(seed);
+    }
+
+    /**
+     * Play one game from the start until it ends
+     *
+     * @param results Where the result of the game is counted
+     */
+    public void playGame(Results results) {
+        setUpBoard();
+        finishgame = null;
+        record.moves.clear();
+        int plies = 0;
+        while (finishgame == null) {
+            int side = board.whiteTurn ? BoardState.WHITE : BoardState.BLACK;
+            MoveList moves = legalMoves;
+            MoveGenerator.generateLegal(board, side, moves);
+            if (moves.isEmpty()) {
+                // The player can not move: the game ends in a tie
+                finishgame = BoardState.RESULT_NAMES[BoardState.TIE];
+                break;
+            }
+            int pieceMove;
+            if (searches[side] == null || plies < RANDOM_PLIES) {
+                pieceMove = moves.get(random.nextInt(moves.size));
+            } else {
+                pieceMove = searches[side].search(board, depths[side], 0).bestMove;
+            }
+            doAndValidateMove(pieceMove);
+            record.moves.add(pieceMove);
+            plies++;
+        }
+        record.result = results.add(finishgame, plies);
+    }
+
+    /**
+     * Play a number of games with a pool of workers
+     *
+     * @param games The number of games
+     * @param workers The number of worker threads
+     * @param whiteDepth The moves searched ahead by white, 0 for random moves
+     * @param blackDepth The moves searched ahead by black, 0 for random moves
+     * @param archive Where the games are written, or null
+     * @return The results of all the games
+     * @throws Exception If a worker failed
+     */
+    public static Results run(int games, int workers, int whiteDepth, int blackDepth, GameArchive.Writer archive) throws Exception {
+        Results results = new Results(games);
+        AtomicInteger nextGame = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>(workers);
+            for (int i = 0; i < workers; i++) {
+                long seed = i;
+                futures.add(pool.submit(() -> {
+                    SelfPlayRunner worker = new SelfPlayRunner(whiteDepth, blackDepth, seed);
+                    // Each worker takes the next game until all the games are played
+                    int number;
+                    while ((number = nextGame.getAndIncrement()) < games) {
+                        worker.playGame(results);
+                        if (archive != null) {
+                            worker.record.number = number + 1;
+                            archive.write(worker.record);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        results.finish();
+        return results;
+    }
+
+    /**
+     * Play the games given in the command line and print the results
+     *
+     * @param args The number of games, the number of workers, the depth of white, the depth of black and the archive
+     * @throws Exception If a worker failed
+     */
+    public static void main(String args[]) throws Exception {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int whiteDepth = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        int blackDepth = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        System.out.println("Playing " + games + " games with " + workers + " workers, white depth "
+            + whiteDepth + ", black depth " + blackDepth);
+        if (args.length > 4) {
+            try (GameArchive.Writer archive = new GameArchive.Writer(Paths.get(args[4]))) {
+                System.out.println(run(games, workers, whiteDepth, blackDepth, archive));
+            }
+        } else {
+            System.out.println(run(games, workers, whiteDepth, blackDepth, null));
+        }
+    }
+
+    /**
+     * The results of the games played, shared by all the workers
+     */
+    public static class Results {
+
+        // The result of every game (see BoardState.result), in the order they finished
+        public final byte[] outcomes;
+        // The number of moves of every game, in the order they finished
+        public final int[] plies;
+        // The number of games of each result, indexed like BoardState.RESULT_NAMES
+        public final int[] counts = new int[4];
+        // The number of games finished
+        private int finished;
+        // The time when the games started and the time they took
+        private final long start = System.nanoTime();
+        private long nanos;
+
+        /**
+         * Constructor of the results
+         *
+         * @param games The number of games that will be played
+         */
+        public Results(int games) {
+            outcomes = new byte[games];
+            plies = new int[games];
+        }
+
+        /**
+         * Count a finished game
+         *
+         * @param finishgame The message of the result of the game
+         * @param moves The number of moves of the game
+         * @return The result of the game (see BoardState.result)
+         */
+        public synchronized int add(String finishgame, int moves) {
+            int result = BoardState.TIE;
+            for (int i = 1; i < BoardState.RESULT_NAMES.length; i++) {
+                if (BoardState.RESULT_NAMES[i].equals(finishgame)) result = i;
+            }
+            outcomes[finished] = (byte)result;
+            plies[finished] = moves;
+            counts[result]++;
+            finished++;
+            return result;
+        }
+
+        /**
+         * Stop the time of the games
+         */
+        synchronized void finish() {
+            nanos = System.nanoTime() - start;
+        }
+
+        /**
+         * Returns the number of games finished
+         *
+         * @return The games
+         */
+        public synchronized int games() {
+            return finished;
+        }
+
+        /**
+         * Returns the number of games finished per second
+         *
+         * @return The games per second
+         */
+        public synchronized double gamesPerSecond() {
+            return nanos == 0 ? 0 : finished * 1e9 / nanos;
+        }
+
+        /**
+         * Returns the results as text
+         *
+         * @return The text of the results
+         */
+        @Override
+        public synchronized String toString() {
+            long totalPlies = 0;
+            for (int i = 0; i < finished; i++) {
+                totalPlies += plies[i];
+            }
+            return String.format("%d games: %d white wins, %d black wins, %d ties, %.1f moves per game, %.1f games/sec",
+                finished, counts[BoardState.WHITE_WINS], counts[BoardState.BLACK_WINS], counts[BoardState.TIE],
+                finished == 0 ? 0.0 : (double)totalPlies / finished, gamesPerSecond());
+        }
+    }
+}
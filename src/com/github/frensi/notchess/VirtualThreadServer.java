@@ -0,0 +1,105 @@
+package com.github.frensi.notchess;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.JLabel;
+
+/**
+ * A server that hosts many games at the same time with a virtual thread for
+ * each connection. Every thread plays its game with the same blocking loop
+ * as ServerChess (read a line, doAndValidateMove, pcMove), so the code of the
+ * game does not change. A virtual thread that waits for its client does not
+ * hold a thread of the system, so the server can keep many thousands of
+ * connections open while most of the clients are thinking.
+ *
+ * The clients talk to it in the same way as to ServerChess and GameServer.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public class VirtualThreadServer {
+
+    // The connections waiting to be accepted
+    public static final int BACKLOG = 1024;
+
+    // Accepts the new connections
+    private final ServerSocket serverSocket;
+    // The number of games being played
+    private final AtomicInteger games = new AtomicInteger();
+
+    /**
+     * Constructor of the server
+     *
+     * @param port The port to listen
+     * @throws IOException If the port can not be opened
+     */
+    public VirtualThreadServer(int port) throws IOException {
+        serverSocket = new ServerSocket(port, BACKLOG);
+    }
+
+    /**
+     * Accept connections and start a virtual thread for each one until the
+     * thread is interrupted
+     *
+     * @throws IOException If the server socket fails
+     */
+    public void run() throws IOException {
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (!Thread.currentThread().isInterrupted()) {
+                Socket socket = serverSocket.accept();
+                threads.execute(() -> serve(socket));
+            }
+        } finally {
+            serverSocket.close();
+        }
+    }
+
+    /**
+     * Returns the number of games being played
+     *
+     * @return The number of games
+     */
+    public int games() {
+        return games.get();
+    }
+
+    /**
+     * Play the game of a connection and close it when the game ends
+     *
+     * @param socket The connection to the client
+     */
+    private void serve(Socket socket) {
+        games.incrementAndGet();
+        try (socket) {
+            Game game = new Game();
+            game.play(socket);
+        } catch (IOException e) {
+            // Only this connection is lost
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            games.decrementAndGet();
+        }
+    }
+
+    /**
+     * The game of one connection, a ServerChess without graphics
+     */
+    static class Game extends ServerChess {
+
+        /**
+         * Constructor of a game without graphics
+         */
+        Game() {
+            super();
+            // The label is never shown, it only receives the messages of the game
+            moveLabel = new JLabel();
+            setUpBoard();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.frensi.notchess;
+
+import java.util.Random;
+
+/**
+ * The random keys used to hash the positions of notchess (Zobrist hashing).
+ * The hash of a position is the XOR of the key of every piece on its square,
+ * the key of the player that moves and the key of the moves left. Making a
+ * move only changes a few keys, so BoardState keeps the hash up to date
+ * without looking at the whole board.
+ *
+ * The keys come from a fixed seed, so the same position has the same hash
+ * in every run of the program.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public final class Zobrist {
+
+    // The key of each piece on each square, indexed by piece and square
+    public static final long[][] PIECE_KEYS = new long[12][64];
+    // The key added when black has to move
+    public static final long BLACK_TO_MOVE;
+    // The key of each number of moves left (the games never have more than 50)
+    public static final long[] MOVES_LEFT_KEYS = new long[64];
+
+    static {
+        Random random = new Random(0x6E6F746368657373L);
+        for (int piece = 0; piece < 12; piece++) {
+            for (int square = 0; square < 64; square++) {
+                PIECE_KEYS[piece][square] = random.nextLong();
+            }
+        }
+        BLACK_TO_MOVE = random.nextLong();
+        for (int i = 0; i < 64; i++) {
+            MOVES_LEFT_KEYS[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * No objects of this class are needed
+     */
+    private Zobrist() {
+
+    }
+
+    /**
+     * Returns the key of a number of moves left
+     *
+     * @param movesLeft The moves left
+     * @return The key
+     */
+    public static long movesLeftKey(int movesLeft) {
+        return MOVES_LEFT_KEYS[Math.max(0, Math.min(63, movesLeft))];
+    }
+
+    /**
+     * Compute the hash of a board from nothing, looking at every piece
+     *
+     * @param board The board of the game
+     * @return The hash of the position
+     */
+    public static long hash(BoardState board) {
+        long hash = movesLeftKey(board.movesLeft);
+        if (!board.whiteTurn) {
+            hash ^= BLACK_TO_MOVE;
+        }
+        for (int piece = 0; piece < 12; piece++) {
+            long pieces = board.bitboards[piece];
+            while (pieces != 0) {
+                int square = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                hash ^= PIECE_KEYS[piece][square];
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,363 @@
+package com.github.frensi.notchess.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.swing.JLabel;
+
+import com.github.frensi.notchess.BoardState;
+import com.github.frensi.notchess.ChessPiece;
+import com.github.frensi.notchess.Move;
+import com.github.frensi.notchess.MoveGenerator;
+import com.github.frensi.notchess.MoveList;
+import com.github.frensi.notchess.PositionNotation;
+import com.github.frensi.notchess.notchess;
+import com.github.frensi.notchess.engine.ParallelSearch;
+import com.github.frensi.notchess.engine.Search;
+import com.github.frensi.notchess.engine.SearchResult;
+import com.github.frensi.notchess.pieces.Bishop;
+import com.github.frensi.notchess.pieces.King;
+import com.github.frensi.notchess.pieces.Knight;
+import com.github.frensi.notchess.pieces.Pawn;
+import com.github.frensi.notchess.pieces.Queen;
+import com.github.frensi.notchess.pieces.Rook;
+
+/**
+ * Micro benchmarks for the rules of notchess. Every benchmark runs over a
+ * corpus of positions: the start of the game, midgames and sparse endgames
+ * reached by random games with fixed seeds. For each benchmark the time and
+ * the bytes allocated per operation are printed, so two versions of the code
+ * can be compared by running this class on both.
+ *
+ * Run it as java com.github.frensi.notchess.bench.NotchessBenchmark followed
+ * by the milliseconds to measure each benchmark (1000 by default) and the
+ * depth of the search benchmark (6 by default). The search benchmark prints
+ * the time to reach that depth on the whole corpus with 1, 2, 4, 8 ... threads,
+ * up to the number of processors.
+ *
+ * The class extends notchess to reach the game state of each position, in
+ * the same way ServerChess and ClientChess do.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public final class NotchessBenchmark extends notchess {
+
+    // The piece classes measured separately
+    private static final Class<?>[] PIECE_CLASSES = {Pawn.class, Knight.class, Bishop.class, Rook.class, Queen.class, King.class};
+
+    // Sum of the results of the benchmarks so the JIT can not remove the work
+    private static long sink;
+    // Where the sum is written at the end, a volatile write the JIT has to keep
+    private static volatile long consumed;
+    // Reusable list for the moves of the benchmarks
+    private static final MoveList buffer = new MoveList();
+
+    // The position as text and as bytes, for the notation benchmarks
+    private String text;
+    private byte[] bytes;
+    // The pieces of the player that has to move, by type (the index in PIECE_CLASSES)
+    private ChessPiece[][] pieces;
+    // The moves that start on the square of each piece, by type, and the piece of each one
+    private int[][] pieceMoves;
+    private ChessPiece[][] movePieces;
+
+    /**
+     * A benchmark that runs once over every position of the corpus
+     */
+    private interface Operation {
+        /**
+         * Run the benchmark on one position
+         *
+         * @param position The position
+         * @return The number of operations made
+         */
+        long run(NotchessBenchmark position);
+    }
+
+    /**
+     * Constructor of a position without graphics
+     */
+    public NotchessBenchmark() {
+        super();
+        // The label is never shown, it only receives the messages of the game
+        moveLabel = new JLabel();
+        setUpBoard();
+    }
+
+    /**
+     * Returns the position reached after random moves from the start
+     *
+     * @param seed The seed of the random moves
+     * @param plies The number of moves to make
+     * @return The position, or null if the game ended before
+     */
+    private static NotchessBenchmark randomPosition(long seed, int plies) {
+        NotchessBenchmark position = new NotchessBenchmark();
+        Random random = new Random(seed);
+        MoveList moves = new MoveList();
+        for (int i = 0; i < plies; i++) {
+            MoveGenerator.generateLegal(position.board, position.board.whiteTurn ? BoardState.WHITE : BoardState.BLACK, moves);
+            if (moves.isEmpty()) return null;
+            position.doAndValidateMove(moves.get(random.nextInt(moves.size)));
+            if (position.finishgame != null) return null;
+        }
+        return position;
+    }
+
+    /**
+     * Build the corpus of positions: the start, midgames and endgames
+     *
+     * @return The positions
+     */
+    private static ArrayList<NotchessBenchmark> corpus() {
+        ArrayList<NotchessBenchmark> positions = new ArrayList<NotchessBenchmark>();
+        positions.add(new NotchessBenchmark());
+        for (long seed = 1; positions.size() < 9; seed++) {
+            NotchessBenchmark midgame = randomPosition(seed, 16 + (int)(seed % 3) * 8);
+            if (midgame != null) positions.add(midgame);
+        }
+        // Endgames are the last positions before a random game ends with few pieces left
+        for (long seed = 100; positions.size() < 17; seed++) {
+            int plies = 0;
+            NotchessBenchmark game = new NotchessBenchmark();
+            Random random = new Random(seed);
+            MoveList moves = new MoveList();
+            while (game.finishgame == null && game.board.pieceCount(BoardState.WHITE) + game.board.pieceCount(BoardState.BLACK) > 8) {
+                MoveGenerator.generateLegal(game.board, game.board.whiteTurn ? BoardState.WHITE : BoardState.BLACK, moves);
+                if (moves.isEmpty()) break;
+                game.doAndValidateMove(moves.get(random.nextInt(moves.size)));
+                plies++;
+            }
+            if (game.finishgame == null && !moves.isEmpty()) {
+                NotchessBenchmark endgame = randomPosition(seed, plies);
+                if (endgame != null) positions.add(endgame);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the pieces of the player that has to move
+     *
+     * @return The pieces
+     */
+    private ArrayList<ChessPiece> sideToMove() {
+        return board.whiteTurn ? whiteChessPieces : blackChessPieces;
+    }
+
+    /**
+     * Find the pieces of the player that has to move and the moves of each
+     * one, before the pieces are measured, so the measure only times the
+     * pieces
+     */
+    private void preparePieces() {
+        int side = board.whiteTurn ? BoardState.WHITE : BoardState.BLACK;
+        MoveList moves = new MoveList();
+        // Every move of the player, the capturing and the quiet ones
+        MoveGenerator.generateCaptures(board, side, moves);
+        MoveGenerator.generateQuiet(board, side, moves);
+        pieces = new ChessPiece[PIECE_CLASSES.length][];
+        pieceMoves = new int[PIECE_CLASSES.length][];
+        movePieces = new ChessPiece[PIECE_CLASSES.length][];
+        for (int type = 0; type < PIECE_CLASSES.length; type++) {
+            ArrayList<ChessPiece> typePieces = new ArrayList<ChessPiece>();
+            ArrayList<ChessPiece> owners = new ArrayList<ChessPiece>();
+            MoveList typeMoves = new MoveList();
+            for (ChessPiece c : sideToMove()) {
+                if (c.getClass() != PIECE_CLASSES[type]) continue;
+                typePieces.add(c);
+                int square = BoardState.square(c.position.x, c.position.y);
+                for (int i = 0; i < moves.size; i++) {
+                    if (Move.from(moves.get(i)) == square) {
+                        typeMoves.add(moves.get(i));
+                        owners.add(c);
+                    }
+                }
+            }
+            pieces[type] = typePieces.toArray(new ChessPiece[0]);
+            pieceMoves[type] = Arrays.copyOf(typeMoves.moves, typeMoves.size);
+            movePieces[type] = owners.toArray(new ChessPiece[0]);
+        }
+    }
+
+    /**
+     * Count the move sequences of a given length (perft)
+     *
+     * @param board The board to start from
+     * @param depth The number of moves
+     * @param lists One list of moves for each depth
+     * @return The number of positions at the last move
+     */
+    private static long perft(BoardState board, int depth, MoveList[] lists) {
+        MoveList moves = lists[depth];
+        MoveGenerator.generateLegal(board, board.whiteTurn ? BoardState.WHITE : BoardState.BLACK, moves);
+        if (depth == 1) return moves.size;
+        long nodes = 0;
+        for (int i = 0; i < moves.size; i++) {
+            board.makeMove(moves.get(i));
+            nodes += perft(board, depth - 1, lists);
+            board.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Run a benchmark over the corpus, first to warm up and then to measure
+     *
+     * @param name The name of the benchmark
+     * @param positions The corpus of positions
+     * @param millis The time to measure
+     * @param operation The benchmark
+     */
+    private static void measure(String name, ArrayList<NotchessBenchmark> positions, long millis, Operation operation) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+        // Warm up so the JIT compiles the code
+        long end = System.nanoTime() + millis * 1_000_000L;
+        while (System.nanoTime() < end) {
+            for (NotchessBenchmark position : positions) sink += operation.run(position);
+        }
+
+        long ops = 0;
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        end = start + millis * 1_000_000L;
+        while (System.nanoTime() < end) {
+            for (NotchessBenchmark position : positions) ops += operation.run(position);
+        }
+        long time = System.nanoTime() - start;
+        bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+
+        System.out.printf("%-24s %12d ops %12.1f ns/op %10.1f B/op%n", name, ops, (double)time / ops, (double)bytes / ops);
+    }
+
+    /**
+     * Run all the benchmarks
+     *
+     * @param args The milliseconds to measure each benchmark
+     */
+    public static void main(String args[]) {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        ArrayList<NotchessBenchmark> positions = corpus();
+        System.out.println("Corpus: " + positions.size() + " positions");
+        for (NotchessBenchmark position : positions) {
+            position.text = PositionNotation.format(position.board);
+            position.bytes = PositionNotation.toBytes(position.board);
+            position.preparePieces();
+        }
+
+        // validMove of every move of each piece and canCapture of each piece, for each type of piece
+        for (int pieceType = 0; pieceType < PIECE_CLASSES.length; pieceType++) {
+            String pieceName = PIECE_CLASSES[pieceType].getSimpleName();
+            int type = pieceType;
+            measure("validMove/" + pieceName, positions, millis, position -> {
+                int[] moves = position.pieceMoves[type];
+                ChessPiece[] owners = position.movePieces[type];
+                for (int i = 0; i < moves.length; i++) {
+                    if (owners[i].validMove(moves[i])) sink++;
+                }
+                return moves.length;
+            });
+            measure("canCapture/" + pieceName, positions, millis, position -> {
+                MoveList moves = buffer;
+                ChessPiece[] typePieces = position.pieces[type];
+                for (ChessPiece c : typePieces) {
+                    moves.clear();
+                    c.canCapture(moves);
+                    sink += moves.size;
+                }
+                return typePieces.length;
+            });
+        }
+
+        measure("canMove", positions, millis, position -> {
+            if (position.canMove()) sink++;
+            return 1;
+        });
+        measure("generateLegal", positions, millis, position -> {
+            MoveGenerator.generateLegal(position.board, position.board.whiteTurn ? BoardState.WHITE : BoardState.BLACK, buffer);
+            sink += buffer.size;
+            return 1;
+        });
+
+        // Positions written and read as text and as bytes
+        BoardState copy = new BoardState();
+        byte[] bytes = new byte[PositionNotation.BINARY_BYTES];
+        measure("notation/format", positions, millis, position -> {
+            sink += PositionNotation.format(position.board).length();
+            return 1;
+        });
+        measure("notation/parse", positions, millis, position -> {
+            PositionNotation.parse(position.text, copy);
+            sink += copy.hash;
+            return 1;
+        });
+        measure("notation/write", positions, millis, position -> {
+            PositionNotation.write(position.board, bytes, 0);
+            sink += bytes[0];
+            return 1;
+        });
+        measure("notation/read", positions, millis, position -> {
+            PositionNotation.read(position.bytes, 0, copy);
+            sink += copy.hash;
+            return 1;
+        });
+
+        // Whole plies: choose a legal move and play it with doAndValidateMove
+        NotchessBenchmark game = new NotchessBenchmark();
+        Random random = new Random(7);
+        MoveList gameMoves = new MoveList();
+        ArrayList<NotchessBenchmark> single = new ArrayList<NotchessBenchmark>();
+        single.add(game);
+        measure("doAndValidateMove", single, millis, position -> {
+            MoveGenerator.generateLegal(position.board, position.board.whiteTurn ? BoardState.WHITE : BoardState.BLACK, gameMoves);
+            if (gameMoves.isEmpty()) {
+                position.setUpBoard();
+                return 0;
+            }
+            position.finishgame = null;
+            position.doAndValidateMove(gameMoves.get(random.nextInt(gameMoves.size)));
+            return 1;
+        });
+
+        // Perft counts from the start of the game
+        BoardState start = new BoardState();
+        start.setUpBoard();
+        MoveList[] lists = new MoveList[6];
+        for (int i = 0; i < lists.length; i++) lists[i] = new MoveList();
+        for (int depth = 1; depth <= 5; depth++) {
+            long begin = System.nanoTime();
+            long nodes = perft(start, depth, lists);
+            long time = System.nanoTime() - begin;
+            System.out.printf("perft(%d) %15d nodes %12.1f ns/node%n", depth, nodes, (double)time / nodes);
+        }
+        // Time to depth of the search with more and more threads
+        int searchDepth = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        long singleThread = 0;
+        int processors = Runtime.getRuntime().availableProcessors();
+        // Warm up so the JIT compiles the search
+        for (NotchessBenchmark position : positions) {
+            sink += new ParallelSearch().search(position.board, searchDepth - 1, 0).nodes;
+        }
+        for (int threads = 1; threads <= Math.max(1, processors); threads *= 2) {
+            long time = 0;
+            long nodes = 0;
+            for (NotchessBenchmark position : positions) {
+                // Every position gets a new table so the threads do not reuse older searches
+                ParallelSearch search = new ParallelSearch(threads, false, Search.DEFAULT_TABLE_MEGABYTES);
+                SearchResult result = search.search(position.board, searchDepth, 0);
+                search.close();
+                time += result.nanos;
+                nodes += result.nodes;
+                sink += result.bestMove;
+            }
+            if (threads == 1) singleThread = time;
+            System.out.printf("search(%d) %2d threads %10.1f ms %12d nodes %6.2fx%n", searchDepth, threads,
+                time / 1e6, nodes, (double)singleThread / time);
+        }
+        consumed = sink;
+    }
+}
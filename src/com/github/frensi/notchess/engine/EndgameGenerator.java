@@ -0,0 +1,467 @@
+package com.github.frensi.notchess.engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import com.github.frensi.notchess.BoardState;
+import com.github.frensi.notchess.MoveGenerator;
+import com.github.frensi.notchess.MoveList;
+
+/**
+ * Solves every position of a material and writes its EndgameTable. The
+ * materials a capture or a promotion leads to are solved first, so every
+ * move of the material leads to a position that is already solved, to a
+ * position of the same material, or to the end of the game.
+ *
+ * The moves of every position are generated once and kept as the numbers
+ * of the positions they lead to. Then the results are found one move left
+ * at a time, going back from the end of the 50 moves: with one move left,
+ * every move of black ends the game and the fewest pieces win; with more
+ * moves left the player that moves picks the best result of its moves,
+ * read from the results with one move less (after black moves) or from the
+ * results of black with the same moves left (after white moves). The
+ * results are exact, with the captures that have to be made and the ties of
+ * a player that can not move.
+ *
+ * The positions are split in blocks solved by the threads of a
+ * ForkJoinPool, one block at a time each.
+ *
+ * Run it as java com.github.frensi.notchess.engine.EndgameGenerator followed
+ * by the directory of the tables, and the number of pieces (every material
+ * with that many pieces or fewer) or the names of the materials, like KNvK.
+ * The number of threads can be given last as T and a number.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public class EndgameGenerator {
+
+    // The positions of a block
+    private static final int BLOCK = 1 << 12;
+    // The table of a move that ends the game, the result is in place of the position
+    private static final int END = 63;
+    // The bits of the number of a position in a move
+    private static final int INDEX_BITS = 25;
+
+    // The directory of the tables
+    private final Path directory;
+    // The threads solving the positions
+    private final ForkJoinPool pool;
+    // The tables solved or found in the directory, by material
+    private final Map<Long, EndgameTable> tables = new HashMap<Long, EndgameTable>();
+
+    /**
+     * Constructor of the generator
+     *
+     * @param directory The directory of the tables
+     * @param threads The number of threads solving the positions
+     */
+    public EndgameGenerator(Path directory, int threads) {
+        this.directory = directory;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Solve a material, and the materials it leads to, if their tables are
+     * not in the directory yet
+     *
+     * @param pieces The pieces of the material (see EndgameTable.parse)
+     * @return The table of the material
+     * @throws IOException If a table can not be read or written
+     */
+    public EndgameTable solve(int[] pieces) throws IOException {
+        long key = EndgameTable.materialKey(pieces);
+        EndgameTable table = tables.get(key);
+        if (table != null) {
+            return table;
+        }
+        Path path = directory.resolve(EndgameTable.name(pieces) + EndgameTable.EXTENSION);
+        if (!Files.exists(path)) {
+            List<int[]> next = nextMaterials(pieces);
+            for (int[] material : next) {
+                solve(material);
+            }
+            long start = System.nanoTime();
+            int lists = new Solver(pieces, next).run(path);
+            System.out.printf("%s: %d positions, %d lists of results, %d bytes in %.1f s%n", EndgameTable.name(pieces),
+                EndgameTable.positions(pieces.length), lists, Files.size(path), (System.nanoTime() - start) / 1e9);
+        }
+        table = new EndgameTable(path);
+        tables.put(key, table);
+        return table;
+    }
+
+    /**
+     * Solve every material with a number of pieces or fewer
+     *
+     * @param maxPieces The number of pieces
+     * @throws IOException If a table can not be read or written
+     */
+    public void solveAll(int maxPieces) throws IOException {
+        for (int count = 2; count <= maxPieces; count++) {
+            for (int white = 1; white < count; white++) {
+                for (int[] whitePieces : pieceSets(BoardState.WHITE, white)) {
+                    for (int[] blackPieces : pieceSets(BoardState.BLACK, count - white)) {
+                        int[] pieces = Arrays.copyOf(whitePieces, count);
+                        System.arraycopy(blackPieces, 0, pieces, white, count - white);
+                        solve(pieces);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop the threads of the generator
+     */
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Returns every set of pieces of a player with a number of pieces
+     *
+     * @param color The player
+     * @param count The number of pieces
+     * @return The sets, each one by type from the king down
+     */
+    private static List<int[]> pieceSets(int color, int count) {
+        List<int[]> sets = new ArrayList<int[]>();
+        addPieceSets(color, new int[count], 0, BoardState.KING, sets);
+        return sets;
+    }
+
+    /**
+     * Add the sets of pieces that start with the pieces already chosen
+     *
+     * @param color The player
+     * @param set The pieces chosen so far
+     * @param chosen The number of pieces chosen
+     * @param maxType The type of the last piece chosen, the next ones are the same or lower
+     * @param sets Where the sets are added
+     */
+    private static void addPieceSets(int color, int[] set, int chosen, int maxType, List<int[]> sets) {
+        if (chosen == set.length) {
+            sets.add(set.clone());
+            return;
+        }
+        for (int type = maxType; type >= BoardState.PAWN; type--) {
+            set[chosen] = BoardState.piece(color, type);
+            addPieceSets(color, set, chosen + 1, type, sets);
+        }
+    }
+
+    /**
+     * Returns the materials a move of a material can lead to: a piece
+     * captured, a pawn promoted, or both at once. A capture of the last
+     * piece of a player ends the game, so it has no material.
+     *
+     * @param pieces The pieces of the material
+     * @return The other materials
+     */
+    private static List<int[]> nextMaterials(int[] pieces) {
+        Map<Long, int[]> next = new LinkedHashMap<Long, int[]>();
+        int[] counts = new int[2];
+        for (int piece : pieces) {
+            counts[BoardState.colorOf(piece)]++;
+        }
+        for (int captured = -1; captured < pieces.length; captured++) {
+            if (captured >= 0 && counts[BoardState.colorOf(pieces[captured])] == 1) continue;
+            for (int promoted = -1; promoted < pieces.length; promoted++) {
+                if (promoted >= 0 && (BoardState.typeOf(pieces[promoted]) != BoardState.PAWN || promoted == captured
+                        || (captured >= 0 && BoardState.colorOf(pieces[promoted]) == BoardState.colorOf(pieces[captured])))) {
+                    continue;
+                }
+                if (captured < 0 && promoted < 0) continue;
+                int[] material = new int[captured >= 0 ? pieces.length - 1 : pieces.length];
+                int size = 0;
+                for (int i = 0; i < pieces.length; i++) {
+                    if (i == captured) continue;
+                    material[size++] = i == promoted ? BoardState.piece(BoardState.colorOf(pieces[i]), BoardState.QUEEN) : pieces[i];
+                }
+                EndgameTable.sort(material);
+                next.putIfAbsent(EndgameTable.materialKey(material), material);
+            }
+        }
+        return new ArrayList<int[]>(next.values());
+    }
+
+    /**
+     * Returns the result when the 50 moves are over, from the pieces left
+     *
+     * @param pieces The pieces of the material
+     * @return WHITE_WINS, BLACK_WINS or TIE
+     */
+    private static int countResult(int[] pieces) {
+        int white = 0;
+        for (int piece : pieces) {
+            if (BoardState.colorOf(piece) == BoardState.WHITE) white++;
+        }
+        int black = pieces.length - white;
+        return white < black ? BoardState.WHITE_WINS : black < white ? BoardState.BLACK_WINS : BoardState.TIE;
+    }
+
+    /**
+     * Returns how good a result is for a player
+     *
+     * @param result The result
+     * @param white True for white
+     * @return 2 for a win, 1 for a tie and 0 for a loss
+     */
+    static int rank(int result, boolean white) {
+        if (result == BoardState.TIE) return 1;
+        return (result == BoardState.WHITE_WINS) == white ? 2 : 0;
+    }
+
+    /**
+     * The positions of one material while it is solved
+     */
+    private class Solver {
+
+        // The pieces of the material
+        private final int[] pieces;
+        // The positions with white to move, the ones with black follow
+        private final int half;
+        // The tables the moves lead to, 0 is this material
+        private final EndgameTable[] next;
+        // The result when the 50 moves are over for each table, 0 is this material
+        private final int[] countResults;
+        // The pieces of each table, 0 is this material
+        private final int[][] tablePieces;
+        // The material of each table, 0 is this material
+        private final Map<Long, Integer> tableOf = new HashMap<Long, Integer>();
+        // The results of each position, two bits for each number of moves left (see EndgameTable.resultOf)
+        private final long[] low;
+        private final long[] high;
+        // Set for the numbers that are positions
+        private final boolean[] valid;
+        // The moves of each block: where the moves of each position start, and the moves
+        private final int[][] firstMove;
+        private final int[][] moves;
+
+        /**
+         * Constructor of the solver
+         *
+         * @param pieces The pieces of the material
+         * @param nextMaterials The materials the moves lead to, already solved
+         */
+        Solver(int[] pieces, List<int[]> nextMaterials) {
+            if (pieces.length > EndgameTable.MAX_PIECES || nextMaterials.size() >= END) {
+                throw new IllegalArgumentException("Too many pieces for a table: " + EndgameTable.name(pieces));
+            }
+            this.pieces = pieces;
+            int positions = (int)EndgameTable.positions(pieces.length);
+            half = positions / 2;
+            next = new EndgameTable[nextMaterials.size() + 1];
+            countResults = new int[next.length];
+            tablePieces = new int[next.length][];
+            countResults[0] = countResult(pieces);
+            tablePieces[0] = pieces;
+            tableOf.put(EndgameTable.materialKey(pieces), 0);
+            for (int i = 0; i < nextMaterials.size(); i++) {
+                long key = EndgameTable.materialKey(nextMaterials.get(i));
+                next[i + 1] = tables.get(key);
+                countResults[i + 1] = countResult(nextMaterials.get(i));
+                tablePieces[i + 1] = nextMaterials.get(i);
+                tableOf.put(key, i + 1);
+            }
+            low = new long[positions];
+            high = new long[positions];
+            valid = new boolean[positions];
+            int blocks = (positions + BLOCK - 1) / BLOCK;
+            firstMove = new int[blocks][];
+            moves = new int[blocks][];
+        }
+
+        /**
+         * Solve every position and write the table
+         *
+         * @param path The file of the table
+         * @return The number of different lists of results
+         * @throws IOException If the file can not be written
+         */
+        int run(Path path) throws IOException {
+            int blocks = firstMove.length;
+            inParallel(blocks, this::generate);
+            for (int movesLeft = 1; movesLeft <= EndgameTable.MAX_MOVES_LEFT; movesLeft++) {
+                // Black first, the moves of white lead to the results of black with the same moves left
+                int left = movesLeft;
+                inParallel(blocks, block -> solveBlock(block, false, left));
+                inParallel(blocks, block -> solveBlock(block, true, left));
+            }
+            return EndgameTable.write(path, pieces, low, high);
+        }
+
+        /**
+         * Run a task for every block with the threads of the generator
+         *
+         * @param blocks The number of blocks
+         * @param task The task, given the number of the block
+         */
+        private void inParallel(int blocks, IntConsumer task) {
+            try {
+                pool.submit(() -> IntStream.range(0, blocks).parallel().forEach(task)).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        /**
+         * Generate the moves of the positions of a block
+         *
+         * @param block The number of the block
+         */
+        private void generate(int block) {
+            BoardState board = new BoardState();
+            MoveList legal = new MoveList();
+            long[] bitboards = new long[12];
+            int start = block * BLOCK;
+            int end = Math.min(start + BLOCK, low.length);
+            int[] first = new int[end - start + 1];
+            int[] blockMoves = new int[BLOCK * 8];
+            int size = 0;
+            for (int index = start; index < end; index++) {
+                first[index - start] = size;
+                if (!EndgameTable.decode(pieces, index, bitboards)) continue;
+                valid[index] = true;
+                boolean white = index < half;
+                board.setPosition(bitboards, white, EndgameTable.MAX_MOVES_LEFT);
+                MoveGenerator.generateLegal(board, white ? BoardState.WHITE : BoardState.BLACK, legal);
+                if (size + legal.size > blockMoves.length) {
+                    blockMoves = Arrays.copyOf(blockMoves, Math.max(blockMoves.length * 2, size + legal.size));
+                }
+                for (int i = 0; i < legal.size; i++) {
+                    board.makeMove(legal.get(i));
+                    blockMoves[size++] = target(board);
+                    board.unmakeMove();
+                }
+            }
+            first[end - start] = size;
+            firstMove[block] = first;
+            moves[block] = Arrays.copyOf(blockMoves, size);
+        }
+
+        /**
+         * Returns where a move led: the table and the number of the
+         * position, or END and the result if the move ended the game
+         *
+         * @param board The board after the move
+         * @return The table in the high bits and the position in the low bits
+         */
+        private int target(BoardState board) {
+            if (board.pieceCount(BoardState.WHITE) == 0) {
+                return END << INDEX_BITS | BoardState.WHITE_WINS;
+            }
+            if (board.pieceCount(BoardState.BLACK) == 0) {
+                return END << INDEX_BITS | BoardState.BLACK_WINS;
+            }
+            int table = tableOf.get(EndgameTable.materialKey(board));
+            return table << INDEX_BITS | (int)EndgameTable.index(tablePieces[table], board);
+        }
+
+        /**
+         * Find the results of the positions of a block where one player moves
+         *
+         * @param block The number of the block
+         * @param white True for the positions with white to move
+         * @param movesLeft The moves left
+         */
+        private void solveBlock(int block, boolean white, int movesLeft) {
+            int start = block * BLOCK;
+            int end = Math.min(start + BLOCK, low.length);
+            if (white ? start >= half : end <= half) return;
+            int[] first = firstMove[block];
+            int[] blockMoves = moves[block];
+            // After black moves there is one move less left
+            int nextMovesLeft = white ? movesLeft : movesLeft - 1;
+            int shift = (movesLeft - 1) * 2;
+            for (int index = start; index < end; index++) {
+                if (!valid[index] || (index < half) != white) continue;
+                // A player that can not move ties the game
+                int best = BoardState.TIE;
+                int bestRank = -1;
+                for (int m = first[index - start]; m < first[index - start + 1] && bestRank < 2; m++) {
+                    int result = resultAfter(blockMoves[m], nextMovesLeft);
+                    int rank = rank(result, white);
+                    if (rank > bestRank) {
+                        best = result;
+                        bestRank = rank;
+                    }
+                }
+                if (shift < 64) {
+                    low[index] |= (long)best << shift;
+                } else {
+                    high[index] |= (long)best << (shift - 64);
+                }
+            }
+        }
+
+        /**
+         * Returns the result of the position a move leads to
+         *
+         * @param move Where the move led (see target)
+         * @param movesLeft The moves left after the move
+         * @return The result
+         */
+        private int resultAfter(int move, int movesLeft) {
+            int table = move >>> INDEX_BITS;
+            int index = move & ((1 << INDEX_BITS) - 1);
+            if (table == END) {
+                return index;
+            }
+            if (movesLeft == 0) {
+                return countResults[table];
+            }
+            if (table == 0) {
+                return EndgameTable.resultOf(low[index], high[index], movesLeft);
+            }
+            return next[table].result(index, movesLeft);
+        }
+    }
+
+    /**
+     * Generate tables from the command line
+     *
+     * @param args The directory, the number of pieces or the materials, and T and the number of threads
+     * @throws IOException If a table can not be read or written
+     */
+    public static void main(String args[]) throws IOException {
+        int count = args.length;
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (count > 2 && args[count - 1].startsWith("T")) {
+            threads = Integer.parseInt(args[count - 1].substring(1));
+            count--;
+        }
+        Path directory = Paths.get(args[0]);
+        Files.createDirectories(directory);
+        EndgameGenerator generator = new EndgameGenerator(directory, threads);
+        long start = System.nanoTime();
+        try {
+            for (int i = 1; i < count; i++) {
+                if (Character.isDigit(args[i].charAt(0))) {
+                    generator.solveAll(Integer.parseInt(args[i]));
+                } else {
+                    generator.solve(EndgameTable.parse(args[i]));
+                }
+            }
+        } finally {
+            generator.close();
+        }
+        System.out.printf("Done in %.1f s with %d threads%n", (System.nanoTime() - start) / 1e9, threads);
+    }
+}
@@ -0,0 +1,401 @@
+package com.github.frensi.notchess.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.frensi.notchess.BoardState;
+
+/**
+ * The exact result of every position of one set of pieces (a material, like
+ * KNvK: a white king and knight against a black king), for every number of
+ * moves left. In notchess the result of a position with few pieces depends
+ * on the moves left, because after 50 moves the player with the fewest
+ * pieces wins, so a table keeps the 50 results of each position.
+ *
+ * The positions are numbered by the squares of the pieces: the square of
+ * each piece in the order of the material is a digit in base 64, and the
+ * positions with black to move come after the ones with white to move.
+ * Pieces of the same kind take their squares in increasing order.
+ *
+ * Few positions have results of their own, most share the same 50 results
+ * with many others. The file keeps each different list of 50 results once
+ * (two bits for each result) and, for each position, the number of its list
+ * in as few bits as possible:
+ *
+ *   header   MAGIC, VERSION, the pieces, the number of lists and the bits of a number
+ *   lists    two longs for each list, the results for 1 to 32 and for 33 to 50 moves left
+ *   numbers  the number of the list of each position, packed in longs
+ *
+ * The file is mapped in memory, so the tables of all the materials can be
+ * open at the same time without reading them.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public final class EndgameTable {
+
+    // The first int of a table
+    public static final int MAGIC = 0x4E435442;
+    // The version of the file
+    public static final int VERSION = 1;
+    // The end of the name of the files of the tables
+    public static final String EXTENSION = ".ntb";
+    // The most pieces a table can have, the positions of five pieces do not fit in an int
+    public static final int MAX_PIECES = 4;
+    // The results are kept for 1 to MAX_MOVES_LEFT moves left
+    public static final int MAX_MOVES_LEFT = 50;
+
+    // The pieces of the material, white first, by type from the king down
+    private final int[] pieces;
+    // The lists of results, two longs each
+    private final long[] lists;
+    // The bits of the number of the list of a position
+    private final int bits;
+    // The file of the table
+    private final MappedByteBuffer data;
+    // The first byte of the numbers in the file
+    private final int numbersStart;
+
+    /**
+     * Open the table of a material
+     *
+     * @param path The file of the table
+     * @throws IOException If the file can not be read or it is not a table
+     */
+    public EndgameTable(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.capacity() < 12 || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IOException("Not an endgame table: " + path);
+        }
+        int count = data.getInt(8);
+        if (count < 2 || count > MAX_PIECES) {
+            throw new IOException("Not an endgame table: " + path);
+        }
+        pieces = new int[count];
+        for (int i = 0; i < count; i++) {
+            pieces[i] = data.getInt(12 + i * 4);
+        }
+        int listCount = data.getInt(12 + count * 4);
+        bits = data.getInt(16 + count * 4);
+        int listsStart = 20 + count * 4;
+        lists = new long[listCount * 2];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = data.getLong(listsStart + i * 8);
+        }
+        numbersStart = listsStart + lists.length * 8;
+        if (data.capacity() != numbersStart + (positions(count) * bits + 63) / 64 * 8) {
+            throw new IOException("The endgame table is not complete: " + path);
+        }
+    }
+
+    /**
+     * Returns the pieces of the material
+     *
+     * @return The pieces, indexed like the bitboards of the board
+     */
+    public int[] pieces() {
+        return pieces.clone();
+    }
+
+    /**
+     * Returns the name of the material, like KNvK
+     *
+     * @return The name
+     */
+    public String name() {
+        return name(pieces);
+    }
+
+    /**
+     * Returns the result of a position of this material
+     *
+     * @param board The board of the game
+     * @return WHITE_WINS, BLACK_WINS or TIE, or ONGOING if the moves left are not in the table
+     */
+    public int result(BoardState board) {
+        if (board.movesLeft < 1 || board.movesLeft > MAX_MOVES_LEFT) {
+            return BoardState.ONGOING;
+        }
+        return result(index(pieces, board), board.movesLeft);
+    }
+
+    /**
+     * Returns the result of a position
+     *
+     * @param index The number of the position (see index)
+     * @param movesLeft The moves left, from 1 to MAX_MOVES_LEFT
+     * @return WHITE_WINS, BLACK_WINS or TIE, or ONGOING if the number is not a position
+     */
+    public int result(long index, int movesLeft) {
+        long bit = index * bits;
+        long word = data.getLong(numbersStart + (int)(bit >>> 6) * 8);
+        // A long mask, the numbers can take 32 bits
+        int list = (int)((word >>> (bit & 63)) & ((1L << bits) - 1));
+        return resultOf(lists[list * 2], lists[list * 2 + 1], movesLeft);
+    }
+
+    /**
+     * Returns the number of the positions of a material with a number of
+     * pieces, for both players
+     *
+     * @param pieceCount The number of pieces
+     * @return The positions
+     */
+    public static long positions(int pieceCount) {
+        return 2L << (6 * pieceCount);
+    }
+
+    /**
+     * Returns the number of a position in the table of its material
+     *
+     * @param pieces The pieces of the material
+     * @param board The board of the game, with the pieces of the material
+     * @return The number of the position
+     */
+    public static long index(int[] pieces, BoardState board) {
+        long index = 0;
+        long digit = 1;
+        int i = 0;
+        while (i < pieces.length) {
+            int piece = pieces[i];
+            long squares = board.bitboards[piece];
+            // The pieces of the same kind take their squares in increasing order
+            for (; i < pieces.length && pieces[i] == piece; i++) {
+                index += Long.numberOfTrailingZeros(squares) * digit;
+                squares &= squares - 1;
+                digit <<= 6;
+            }
+        }
+        return board.whiteTurn ? index : index + digit;
+    }
+
+    /**
+     * Put the pieces of a position on bitboards
+     *
+     * @param pieces The pieces of the material
+     * @param index The number of the position
+     * @param bitboards The bitboards, indexed like the bitboards of the board (they are cleared first)
+     * @return True if the number is a position: no two pieces on a square and no pawn on its last row
+     */
+    public static boolean decode(int[] pieces, long index, long[] bitboards) {
+        Arrays.fill(bitboards, 0L);
+        long occupied = 0;
+        for (int piece : pieces) {
+            int square = (int)(index & 63);
+            index >>>= 6;
+            long bit = 1L << square;
+            if ((occupied & bit) != 0) {
+                return false;
+            }
+            if (BoardState.typeOf(piece) == BoardState.PAWN
+                    && square / 8 == (BoardState.colorOf(piece) == BoardState.WHITE ? 0 : 7)) {
+                return false;
+            }
+            occupied |= bit;
+            bitboards[piece] |= bit;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the number of a position is a position with white to move
+     *
+     * @param pieceCount The number of pieces of the material
+     * @param index The number of the position
+     * @return True if white has to move
+     */
+    public static boolean whiteTurn(int pieceCount, long index) {
+        return index < positions(pieceCount) / 2;
+    }
+
+    /**
+     * Returns a number for the material of a board, the same as the one of
+     * the pieces of the material
+     *
+     * @param board The board of the game
+     * @return The number of the material
+     */
+    public static long materialKey(BoardState board) {
+        long key = 0;
+        for (int piece = 0; piece < 12; piece++) {
+            key |= (long)Long.bitCount(board.bitboards[piece]) << (piece * 4);
+        }
+        return key;
+    }
+
+    /**
+     * Returns a number for a material, the same as the one of every board
+     * with its pieces
+     *
+     * @param pieces The pieces of the material
+     * @return The number of the material
+     */
+    public static long materialKey(int[] pieces) {
+        long key = 0;
+        for (int piece : pieces) {
+            key += 1L << (piece * 4);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the name of a material, like KNvK
+     *
+     * @param pieces The pieces of the material
+     * @return The name
+     */
+    public static String name(int[] pieces) {
+        StringBuilder name = new StringBuilder();
+        boolean black = false;
+        for (int piece : pieces) {
+            if (!black && BoardState.colorOf(piece) == BoardState.BLACK) {
+                name.append('v');
+                black = true;
+            }
+            name.append(BoardState.PIECE_NAMES.charAt(BoardState.typeOf(piece)));
+        }
+        return name.toString();
+    }
+
+    /**
+     * Read the name of a material, like KNvK
+     *
+     * @param name The name
+     * @return The pieces, white first, by type from the king down
+     * @throws IllegalArgumentException If the name is not a material of a table
+     */
+    public static int[] parse(String name) {
+        int v = name.indexOf('v');
+        if (v < 1 || v == name.length() - 1 || name.length() - 1 > MAX_PIECES) {
+            throw new IllegalArgumentException("Not a material: " + name);
+        }
+        int[] pieces = new int[name.length() - 1];
+        int count = 0;
+        for (int i = 0; i < name.length(); i++) {
+            if (i == v) continue;
+            int type = BoardState.PIECE_NAMES.indexOf(name.charAt(i));
+            if (type < 0) {
+                throw new IllegalArgumentException("Not a material: " + name);
+            }
+            pieces[count++] = BoardState.piece(i < v ? BoardState.WHITE : BoardState.BLACK, type);
+        }
+        return sort(pieces);
+    }
+
+    /**
+     * Put the pieces of a material in the order of the tables: white first,
+     * by type from the king down
+     *
+     * @param pieces The pieces
+     * @return The same array, sorted
+     */
+    public static int[] sort(int[] pieces) {
+        // By color, then by type from the king down
+        for (int i = 1; i < pieces.length; i++) {
+            int piece = pieces[i];
+            int j = i - 1;
+            for (; j >= 0 && order(pieces[j]) > order(piece); j--) {
+                pieces[j + 1] = pieces[j];
+            }
+            pieces[j + 1] = piece;
+        }
+        return pieces;
+    }
+
+    /**
+     * Returns the place of a piece in the order of the tables
+     *
+     * @param piece The piece
+     * @return The place
+     */
+    private static int order(int piece) {
+        return BoardState.colorOf(piece) * 6 + BoardState.KING - BoardState.typeOf(piece);
+    }
+
+    /**
+     * Returns one of the results of a list
+     *
+     * @param low The results for 1 to 32 moves left
+     * @param high The results for 33 to 50 moves left
+     * @param movesLeft The moves left
+     * @return The result
+     */
+    public static int resultOf(long low, long high, int movesLeft) {
+        int shift = (movesLeft - 1) * 2;
+        return (int)((shift < 64 ? low >>> shift : high >>> (shift - 64)) & 3);
+    }
+
+    /**
+     * Write the table of a material
+     *
+     * @param path The file of the table
+     * @param pieces The pieces of the material
+     * @param low The results of each position for 1 to 32 moves left (see resultOf)
+     * @param high The results of each position for 33 to 50 moves left
+     * @return The number of different lists of results
+     * @throws IOException If the file can not be written
+     */
+    public static int write(Path path, int[] pieces, long[] low, long[] high) throws IOException {
+        // Give a number to every different list of results
+        Map<Long, Map<Long, Integer>> numbers = new HashMap<Long, Map<Long, Integer>>();
+        long[] listsFound = new long[64];
+        int listCount = 0;
+        int[] listOf = new int[low.length];
+        for (int i = 0; i < low.length; i++) {
+            Map<Long, Integer> withLow = numbers.computeIfAbsent(low[i], key -> new HashMap<Long, Integer>());
+            Integer number = withLow.get(high[i]);
+            if (number == null) {
+                number = listCount++;
+                withLow.put(high[i], number);
+                if (listCount * 2 > listsFound.length) {
+                    listsFound = Arrays.copyOf(listsFound, listsFound.length * 2);
+                }
+                listsFound[number * 2] = low[i];
+                listsFound[number * 2 + 1] = high[i];
+            }
+            listOf[i] = number;
+        }
+        // A power of two, so no number is split between two longs
+        int bits = 1;
+        while (1L << bits < listCount) {
+            bits *= 2;
+        }
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(pieces.length);
+            for (int piece : pieces) {
+                out.writeInt(piece);
+            }
+            out.writeInt(listCount);
+            out.writeInt(bits);
+            for (int i = 0; i < listCount * 2; i++) {
+                out.writeLong(listsFound[i]);
+            }
+            int perWord = 64 / bits;
+            for (int i = 0; i < listOf.length; i += perWord) {
+                long word = 0;
+                for (int j = 0; j < perWord && i + j < listOf.length; j++) {
+                    word |= (long)listOf[i + j] << (j * bits);
+                }
+                out.writeLong(word);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        return listCount;
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.frensi.notchess.engine;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.frensi.notchess.BoardState;
+import com.github.frensi.notchess.Move;
+import com.github.frensi.notchess.MoveGenerator;
+import com.github.frensi.notchess.MoveList;
+
+/**
+ * The tables of a directory made by the EndgameGenerator, used to know the
+ * exact result of a position with few pieces and the moves that keep it.
+ * The search asks it instead of searching the end of the game, and the pc
+ * asks it for its moves when few pieces are left.
+ *
+ * The tables are opened once and only read, so one tablebase can be used
+ * by every thread at the same time.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public class EndgameTablebase {
+
+    // The tables, by material (see EndgameTable.materialKey)
+    private final Map<Long, EndgameTable> tables = new HashMap<Long, EndgameTable>();
+    // The most pieces of a table
+    private int maxPieces;
+
+    /**
+     * Open the tables of a directory
+     *
+     * @param directory The directory of the tables
+     * @throws IOException If a table can not be read
+     */
+    public EndgameTablebase(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EndgameTable.EXTENSION)) {
+            for (Path file : files) {
+                EndgameTable table = new EndgameTable(file);
+                int[] pieces = table.pieces();
+                tables.put(EndgameTable.materialKey(pieces), table);
+                maxPieces = Math.max(maxPieces, pieces.length);
+            }
+        }
+    }
+
+    /**
+     * Returns the most pieces of a position in the tables
+     *
+     * @return The number of pieces
+     */
+    public int maxPieces() {
+        return maxPieces;
+    }
+
+    /**
+     * Returns the number of tables
+     *
+     * @return The tables
+     */
+    public int size() {
+        return tables.size();
+    }
+
+    /**
+     * Returns the exact result of a position, if its material is in the
+     * tables or the game is over
+     *
+     * @param board The board of the game
+     * @return WHITE_WINS, BLACK_WINS or TIE, or ONGOING if the result is not known
+     */
+    public int probe(BoardState board) {
+        int result = board.result();
+        if (result != BoardState.ONGOING || Long.bitCount(board.occupied()) > maxPieces) {
+            return result;
+        }
+        EndgameTable table = tables.get(EndgameTable.materialKey(board));
+        return table == null ? BoardState.ONGOING : table.result(board);
+    }
+
+    /**
+     * Returns a move of the player that has to move that keeps the best
+     * result of the position
+     *
+     * @param board The board of the game (it is not changed)
+     * @return The move, or Move.NONE if the position is not in the tables
+     */
+    public int bestMove(BoardState board) {
+        if (probe(board) == BoardState.ONGOING) {
+            return Move.NONE;
+        }
+        BoardState after = new BoardState(board);
+        MoveList moves = new MoveList();
+        MoveGenerator.generateLegal(after, board.whiteTurn ? BoardState.WHITE : BoardState.BLACK, moves);
+        int best = Move.NONE;
+        int bestRank = -1;
+        for (int i = 0; i < moves.size && bestRank < 2; i++) {
+            after.makeMove(moves.get(i));
+            int result = probe(after);
+            // A player that can not move ties the game
+            if (result == BoardState.ONGOING && !MoveGenerator.hasLegalMove(after, after.whiteTurn ? BoardState.WHITE : BoardState.BLACK)) {
+                result = BoardState.TIE;
+            }
+            after.unmakeMove();
+            if (result == BoardState.ONGOING) {
+                return Move.NONE;
+            }
+            int rank = EndgameGenerator.rank(result, board.whiteTurn);
+            if (rank > bestRank) {
+                best = moves.get(i);
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.frensi.notchess.engine;
+
+import com.github.frensi.notchess.BoardState;
+
+/**
+ * Static evaluation of a notchess position. The goal of the game is to lose
+ * all the pieces, so every piece left counts against its player. Pieces that
+ * the opponent attacks are worth a little less, because the opponent will
+ * have to capture them.
+ *
+ * Scores are from the point of view of the player that has to move: higher
+ * is better for that player.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public final class Evaluation {
+
+    // The value of having one piece less than the opponent
+    public static final int PIECE = 100;
+    // The value of each own piece that the opponent attacks
+    public static final int ATTACKED = 10;
+
+    /**
+     * No objects of this class are needed
+     */
+    private Evaluation() {
+
+    }
+
+    /**
+     * Evaluate a position for the player that has to move
+     *
+     * @param board The board of the game
+     * @return The score of the position
+     */
+    public static int evaluate(BoardState board) {
+        int side = board.whiteTurn ? BoardState.WHITE : BoardState.BLACK;
+        int other = 1 - side;
+        long own = board.occupancy(side);
+        long opponent = board.occupancy(other);
+
+        // Fewer pieces is better
+        int score = (Long.bitCount(opponent) - Long.bitCount(own)) * PIECE;
+
+        // Own pieces that the opponent can be forced to capture, and the other way around
+        score += Long.bitCount(board.attacks(other) & own) * ATTACKED;
+        score -= Long.bitCount(board.attacks(side) & opponent) * ATTACKED;
+        return score;
+    }
+}
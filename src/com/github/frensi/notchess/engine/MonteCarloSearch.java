@@ -0,0 +1,312 @@
+package com.github.frensi.notchess.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.frensi.notchess.BoardState;
+import com.github.frensi.notchess.Move;
+import com.github.frensi.notchess.MoveGenerator;
+import com.github.frensi.notchess.MoveList;
+import com.github.frensi.notchess.PositionNotation;
+
+/**
+ * Monte-Carlo tree search for notchess (UCT). Every playout goes down the
+ * tree to a position not tried yet, choosing at each step the move with the
+ * best win rate plus a bonus for the moves tried less, then plays random
+ * moves to the end of the game and counts the result for every position on
+ * the way. The move played is the one tried most.
+ *
+ * The playouts play random legal moves on one board for each thread, with
+ * lists of moves and random numbers that are never created again, so they
+ * allocate nothing. Only the new positions of the tree are created.
+ *
+ * All the threads share the same tree. A thread that goes through a position
+ * counts its visit at once, before its playout ends (a virtual loss), so the
+ * next threads see a worse win rate there and try other moves instead of
+ * following the same line.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public class MonteCarloSearch {
+
+    // The weight of the bonus of the moves tried less
+    public static final double EXPLORATION = Math.sqrt(2);
+
+    // The longest line of a playout, a game has at most 100 moves
+    private static final int MAX_LINE = 128;
+
+    /**
+     * A position of the tree. The numbers of a node are changed by several
+     * threads, always while holding the node.
+     */
+    private static final class Node {
+
+        // The move that led to the position
+        final int move;
+        // The moves of the position, the first expanded ones have a child
+        int[] moves;
+        Node[] children;
+        int expanded;
+        // The result of the game if it is over at this position, or ONGOING
+        int result = BoardState.ONGOING;
+        // True once the moves or the result are known
+        boolean ready;
+        // The playouts that went through the position, counted when they start
+        int visits;
+        // The wins of the player that made the move, a tie counts half
+        double wins;
+
+        /**
+         * Constructor of a node
+         *
+         * @param move The move that led to the position
+         */
+        Node(int move) {
+            this.move = move;
+        }
+    }
+
+    // The number of threads playing out, counting the calling thread
+    private final int threads;
+    // The threads of the helpers, or null if there is only one thread
+    private final ExecutorService helpers;
+    // The number of playouts of the current search
+    private final AtomicLong playouts = new AtomicLong();
+
+    /**
+     * Constructor of the search
+     *
+     * @param threads The number of threads playing out
+     */
+    public MonteCarloSearch(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The search needs at least one thread");
+        }
+        this.threads = threads;
+        this.helpers = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "notchess-playout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Search the best move of the player that has to move for some time
+     *
+     * @param board The board of the game (it is not changed)
+     * @param millis The time to search in milliseconds
+     * @return The move tried most, with its win rate in thousandths as the score
+     *         and the playouts as the nodes
+     */
+    public SearchResult search(BoardState board, long millis) {
+        long start = System.nanoTime();
+        long deadline = start + millis * 1_000_000L;
+        playouts.set(0);
+        Node root = new Node(Move.NONE);
+        expand(root, new BoardState(board), new MoveList());
+        if (root.result != BoardState.ONGOING) {
+            return new SearchResult(Move.NONE, 0, 0, 0, System.nanoTime() - start);
+        }
+
+        List<Future<?>> futures = new ArrayList<Future<?>>(threads - 1);
+        for (int i = 1; i < threads; i++) {
+            futures.add(helpers.submit(() -> playUntil(root, board, deadline)));
+        }
+        int depth = playUntil(root, board, deadline);
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // Play the move tried most, it is the one the search trusts most
+        Node best = null;
+        synchronized (root) {
+            for (int i = 0; i < root.expanded; i++) {
+                Node child = root.children[i];
+                if (best == null || child.visits > best.visits) {
+                    best = child;
+                }
+            }
+        }
+        int score = best.visits == 0 ? 0 : (int)(best.wins * 1000 / best.visits);
+        return new SearchResult(best.move, score, depth, playouts.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Stop the threads of the helpers
+     */
+    public void close() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    /**
+     * Play out from the root until the time is over
+     *
+     * @param root The root of the tree
+     * @param board The board of the game
+     * @param deadline The time to stop
+     * @return The deepest line of the tree seen by this thread
+     */
+    private int playUntil(Node root, BoardState board, long deadline) {
+        BoardState playout = new BoardState();
+        MoveList moves = new MoveList();
+        Node[] line = new Node[MAX_LINE + 1];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int deepest = 0;
+        // Always at least one playout, so there is a move to play
+        do {
+            playout.copyFrom(board);
+            int length = 0;
+            line[length++] = root;
+            synchronized (root) {
+                root.visits++;
+            }
+
+            // Go down the tree to a position not tried yet
+            Node node = root;
+            while (node.result == BoardState.ONGOING && length < MAX_LINE) {
+                node = select(node);
+                playout.applyMove(node.move);
+                line[length++] = node;
+                if (expand(node, playout, moves)) {
+                    break;
+                }
+            }
+            deepest = Math.max(deepest, length - 1);
+
+            // Play random moves to the end of the game
+            int result = node.result;
+            while (result == BoardState.ONGOING) {
+                MoveGenerator.generateLegal(playout, playout.whiteTurn ? BoardState.WHITE : BoardState.BLACK, moves);
+                if (moves.isEmpty()) {
+                    result = BoardState.TIE;
+                    break;
+                }
+                playout.applyMove(moves.get(random.nextInt(moves.size)));
+                result = playout.result();
+            }
+
+            // Count the result for the player that made the move into each position
+            boolean whiteMovedLast = !board.whiteTurn;
+            for (int i = 0; i < length; i++) {
+                double reward = result == BoardState.TIE ? 0.5
+                    : (result == BoardState.WHITE_WINS) == whiteMovedLast ? 1 : 0;
+                synchronized (line[i]) {
+                    line[i].wins += reward;
+                }
+                whiteMovedLast = !whiteMovedLast;
+            }
+            playouts.incrementAndGet();
+        } while (System.nanoTime() < deadline);
+        return deepest;
+    }
+
+    /**
+     * Choose the next position of the line and count the visit at once
+     * (the virtual loss): a move not tried yet if there is one, or the move
+     * with the best win rate plus bonus
+     *
+     * @param node The position
+     * @return The next position
+     */
+    private Node select(Node node) {
+        synchronized (node) {
+            Node next;
+            if (node.expanded < node.moves.length) {
+                next = new Node(node.moves[node.expanded]);
+                node.children[node.expanded++] = next;
+            } else {
+                next = null;
+                double bestValue = -1;
+                double logVisits = Math.log(node.visits);
+                for (int i = 0; i < node.expanded; i++) {
+                    Node child = node.children[i];
+                    double value;
+                    synchronized (child) {
+                        value = child.wins / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                    }
+                    if (value > bestValue) {
+                        next = child;
+                        bestValue = value;
+                    }
+                }
+            }
+            synchronized (next) {
+                next.visits++;
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Give a new position its moves, or its result if the game is over
+     *
+     * @param node The position
+     * @param board The board of the position
+     * @param moves A list of moves that can be used
+     * @return True if the position was new, false if another playout gave them first
+     */
+    private boolean expand(Node node, BoardState board, MoveList moves) {
+        synchronized (node) {
+            if (node.ready) {
+                return false;
+            }
+        }
+        int result = board.result();
+        if (result == BoardState.ONGOING) {
+            MoveGenerator.generateLegal(board, board.whiteTurn ? BoardState.WHITE : BoardState.BLACK, moves);
+            // A player that can not move ties the game
+            if (moves.isEmpty()) {
+                result = BoardState.TIE;
+            }
+        }
+        synchronized (node) {
+            if (node.ready) {
+                return false;
+            }
+            node.result = result;
+            if (result == BoardState.ONGOING) {
+                node.moves = new int[moves.size];
+                System.arraycopy(moves.moves, 0, node.moves, 0, moves.size);
+                node.children = new Node[moves.size];
+            }
+            node.ready = true;
+            return true;
+        }
+    }
+
+    /**
+     * Search a position and print the move and the playouts per second
+     *
+     * @param args The position as text (or START), the milliseconds and the threads
+     */
+    public static void main(String args[]) {
+        BoardState board = new BoardState();
+        if (args.length == 0 || args[0].equalsIgnoreCase("START")) {
+            board.setUpBoard();
+        } else {
+            PositionNotation.parse(args[0], board);
+        }
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        MonteCarloSearch search = new MonteCarloSearch(threads);
+        SearchResult result = search.search(board, millis);
+        search.close();
+        System.out.println("move " + Move.toString(result.bestMove) + " win rate " + result.score / 10.0
+            + "% depth " + result.depth + " playouts " + result.nodes + " playouts/sec " + result.nodesPerSecond());
+    }
+}
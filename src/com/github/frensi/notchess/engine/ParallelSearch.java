@@ -0,0 +1,166 @@
+package com.github.frensi.notchess.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.github.frensi.notchess.BoardState;
+import com.github.frensi.notchess.Move;
+
+/**
+ * Searches with several threads that share one TranspositionTable (Lazy
+ * SMP). The calling thread runs the main search to the depth asked; the
+ * helper threads search the same position at the same time, every second
+ * one a depth ahead and each with a different order of the root moves. The
+ * helpers fill the table with positions the main search reaches later, so
+ * the main search gets to its depth faster. When the main search finishes
+ * the helpers are stopped, and the result searched deepest is returned.
+ *
+ * The helpers run in a ForkJoinPool or in platform threads of their own.
+ * Both kinds of threads are daemons, so they do not keep the program open.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public class ParallelSearch {
+
+    // The number of threads searching, counting the calling thread
+    private final int threads;
+    // One search for each thread, the first one is the main search
+    private final Search[] searches;
+    // The table shared by all the searches
+    private final TranspositionTable table;
+    // The threads of the helpers, or null if there is only one thread
+    private final ExecutorService helpers;
+
+    /**
+     * Constructor of a search with one thread
+     */
+    public ParallelSearch() {
+        this(1, false, Search.DEFAULT_TABLE_MEGABYTES);
+    }
+
+    /**
+     * Constructor of the search
+     *
+     * @param threads The number of threads searching
+     * @param forkJoin True to run the helpers in a ForkJoinPool, false to use platform threads
+     * @param tableMegabytes The size of the shared table
+     */
+    public ParallelSearch(int threads, boolean forkJoin, int tableMegabytes) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The search needs at least one thread");
+        }
+        this.threads = threads;
+        this.table = TranspositionTable.ofMegabytes(tableMegabytes);
+        this.searches = new Search[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new Search(table);
+        }
+        if (threads == 1) {
+            this.helpers = null;
+        } else if (forkJoin) {
+            this.helpers = new ForkJoinPool(threads - 1);
+        } else {
+            this.helpers = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "notchess-search");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Returns the number of threads searching
+     *
+     * @return The number of threads
+     */
+    public int threads() {
+        return threads;
+    }
+
+    /**
+     * Use the tables of the positions with few pieces in every thread
+     *
+     * @param tablebase The tables, or null to search every position
+     */
+    public void setTablebase(EndgameTablebase tablebase) {
+        for (Search search : searches) {
+            search.setTablebase(tablebase);
+        }
+    }
+
+    /**
+     * Search the best move of the player that has to move
+     *
+     * @param board The board of the game (it is not changed)
+     * @param maxDepth The maximum number of moves to look ahead
+     * @param nodeLimit The maximum number of positions each thread visits, or 0 for no limit
+     * @return The best move found, with the nodes of all the threads
+     */
+    public SearchResult search(BoardState board, int maxDepth, long nodeLimit) {
+        if (helpers == null) {
+            return searches[0].search(board, maxDepth, nodeLimit);
+        }
+        long start = System.nanoTime();
+        table.newSearch();
+
+        // Start the helpers, every second one a depth ahead of the main search
+        List<Future<SearchResult>> futures = new ArrayList<Future<SearchResult>>(threads - 1);
+        for (int i = 1; i < threads; i++) {
+            Search helper = searches[i];
+            int firstDepth = 1 + i % 2;
+            int shift = i;
+            helper.resume();
+            futures.add(helpers.submit(() -> helper.search(board, firstDepth, Search.MAX_PLY, nodeLimit, shift)));
+        }
+
+        SearchResult best = searches[0].search(board, 1, maxDepth, nodeLimit, 0);
+        long nodes = best.nodes;
+
+        // Stop the helpers and keep the result searched deepest
+        for (int i = 1; i < threads; i++) {
+            searches[i].stop();
+        }
+        for (Future<SearchResult> future : futures) {
+            SearchResult result = join(future);
+            if (result == null) continue;
+            nodes += result.nodes;
+            if (result.depth > best.depth && result.bestMove != Move.NONE) {
+                best = result;
+            }
+        }
+        return new SearchResult(best.bestMove, best.score, best.depth, nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * Stop the threads of the helpers
+     */
+    public void close() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    /**
+     * Wait for a helper to finish
+     *
+     * @param future The search of the helper
+     * @return The result of the helper, or null if it failed
+     */
+    private static SearchResult join(Future<SearchResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
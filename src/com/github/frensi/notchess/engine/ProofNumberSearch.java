@@ -0,0 +1,550 @@
+package com.github.frensi.notchess.engine;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import com.github.frensi.notchess.BoardState;
+import com.github.frensi.notchess.Move;
+import com.github.frensi.notchess.MoveGenerator;
+import com.github.frensi.notchess.MoveList;
+import com.github.frensi.notchess.PositionNotation;
+
+/**
+ * Proves or disproves that the player that moves in a position can force a
+ * win, with proof-number search. Every position of the tree has a proof
+ * number (how many positions at least still have to be proven to prove the
+ * win) and a disproof number (the same for a tie or a loss), and the search
+ * always expands the position that helps the most. The captures that have
+ * to be made leave few moves in many positions, so the proofs of notchess
+ * are often long but narrow, which suits this search better than alpha-beta.
+ *
+ * With two levels (PN2) every new position is first given a small proof
+ * search of its own, as big as the main tree, whose tree is thrown away
+ * after it: the numbers of the main tree are better and it needs less memory.
+ *
+ * The tree is kept in a table of a fixed number of nodes. The positions
+ * proven or disproven lose the positions under them at once, keeping only
+ * the size of their proof. When the table is full, the half of the expanded
+ * positions not visited for the longest time lose the positions under them,
+ * but keep their numbers, so they can be expanded again later.
+ *
+ * Run it as java com.github.frensi.notchess.engine.ProofNumberSearch followed
+ * by the position as text (see PositionNotation, or START), the seconds to
+ * search (60 by default) and the nodes of the table (1048576 by default).
+ * PN after them searches with one level, and E and a directory uses the
+ * endgame tables (see EndgameTablebase).
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public class ProofNumberSearch {
+
+    // The results of a proof
+    public static final int UNKNOWN = 0;
+    public static final int PROVEN = 1;
+    public static final int DISPROVEN = 2;
+    // The names of the results
+    public static final String[] RESULT_NAMES = {"UNKNOWN", "PROVEN", "DISPROVEN"};
+
+    // The nodes of the table if no other value is given
+    public static final int DEFAULT_TABLE_NODES = 1 << 20;
+    // A proof or disproof number that can not get smaller, the position is solved
+    static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    // The most moves of a position, the free nodes needed to expand one
+    private static final int MAX_MOVES = 256;
+    // The most moves of a game, and so of the lines of the tree
+    private static final int MAX_LINE = 2 * 50 + 2;
+
+    /**
+     * The result of a proof
+     */
+    public static class Result {
+
+        // PROVEN, DISPROVEN or UNKNOWN
+        public final int status;
+        // The move that wins if the win was proven, or Move.NONE
+        public final int move;
+        // The positions of the proof or of the disproof in the main tree, 0 if unknown
+        public final int proofSize;
+        // The number of positions evaluated in both levels
+        public final long nodes;
+        // The time used by the search
+        public final long nanos;
+
+        /**
+         * Constructor of the result
+         *
+         * @param status PROVEN, DISPROVEN or UNKNOWN
+         * @param move The move that wins, or Move.NONE
+         * @param proofSize The positions of the proof or disproof
+         * @param nodes The number of positions evaluated
+         * @param nanos The time used in nanoseconds
+         */
+        public Result(int status, int move, int proofSize, long nodes, long nanos) {
+            this.status = status;
+            this.move = move;
+            this.proofSize = proofSize;
+            this.nodes = nodes;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Returns the number of positions evaluated per second
+         *
+         * @return The nodes per second
+         */
+        public long nodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+        }
+
+        /**
+         * Returns the result as text
+         *
+         * @return The text of the result
+         */
+        @Override
+        public String toString() {
+            return RESULT_NAMES[status] + (move == Move.NONE ? "" : " move " + Move.toString(move))
+                + " proof size " + proofSize + " nodes " + nodes + " nps " + nodesPerSecond()
+                + " time " + nanos / 1_000_000 + " ms";
+        }
+    }
+
+    // The main tree
+    private final Tree tree;
+    // The tree of the small searches of the new positions, or null for one level
+    private final Tree inner;
+    // The exact results of the positions with few pieces, or null
+    private EndgameTablebase tablebase;
+    // The board searched, moves are made and taken back on it
+    private final BoardState board = new BoardState();
+    // One list of moves for each ply of the tree
+    private final MoveList[] moveLists = new MoveList[MAX_LINE + 1];
+    // True if the win to prove is a win of white
+    private boolean attackerWhite;
+    // The number of positions evaluated
+    private long nodes;
+    // The time when the search has to stop
+    private long deadline;
+
+    /**
+     * Constructor of a search with two levels
+     *
+     * @param tableNodes The nodes of the table of the main tree
+     */
+    public ProofNumberSearch(int tableNodes) {
+        this(tableNodes, true);
+    }
+
+    /**
+     * Constructor of the search
+     *
+     * @param tableNodes The nodes of the table of the main tree
+     * @param twoLevels True to give every new position a small search of its own (PN2)
+     */
+    public ProofNumberSearch(int tableNodes, boolean twoLevels) {
+        if (tableNodes < 2 * MAX_MOVES) {
+            throw new IllegalArgumentException("The table needs at least " + 2 * MAX_MOVES + " nodes");
+        }
+        tree = new Tree(tableNodes);
+        inner = twoLevels ? new Tree(Math.max(2 * MAX_MOVES, tableNodes / 4)) : null;
+        for (int i = 0; i <= MAX_LINE; i++) {
+            moveLists[i] = new MoveList();
+        }
+    }
+
+    /**
+     * Use the tables of the positions with few pieces for the positions of
+     * the trees
+     *
+     * @param tablebase The tables, or null
+     */
+    public void setTablebase(EndgameTablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * Prove or disprove that the player that moves can force a win
+     *
+     * @param board The board of the game (it is not changed)
+     * @param millis The most milliseconds to search
+     * @return The result of the proof
+     */
+    public Result prove(BoardState board, long millis) {
+        long start = System.nanoTime();
+        deadline = start + millis * 1_000_000L;
+        nodes = 0;
+        this.board.copyFrom(board);
+        attackerWhite = board.whiteTurn;
+        int root = tree.search(Long.MAX_VALUE, true);
+        int status = tree.proof[root] == 0 ? PROVEN : tree.disproof[root] == 0 ? DISPROVEN : UNKNOWN;
+        int move = Move.NONE;
+        if (status == PROVEN) {
+            for (int child = tree.firstChild[root]; child >= 0; child = tree.sibling[child]) {
+                if (tree.proof[child] == 0) {
+                    move = tree.move[child];
+                    break;
+                }
+            }
+        }
+        int size = status == UNKNOWN ? 0 : tree.size[root];
+        tree.release(root);
+        return new Result(status, move, size, nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * A tree of positions in a table of nodes. The free nodes are linked by
+     * their sibling.
+     */
+    private final class Tree {
+
+        // The nodes of the table
+        final int capacity;
+        // The node above each node, the first node under it and the next node with the same parent
+        final int[] parent;
+        final int[] firstChild;
+        final int[] sibling;
+        // The move that led to each node
+        final int[] move;
+        // The proof and disproof numbers of each node
+        final int[] proof;
+        final int[] disproof;
+        // The positions of the proof or disproof of each solved node
+        final int[] size;
+        // The last time each node was on the line searched
+        final int[] visited;
+        // The first free node, or -1
+        int free;
+        // The nodes used
+        int used;
+        // Counts the lines searched
+        int clock;
+
+        /**
+         * Constructor of the tree
+         *
+         * @param capacity The nodes of the table
+         */
+        Tree(int capacity) {
+            this.capacity = capacity;
+            parent = new int[capacity];
+            firstChild = new int[capacity];
+            sibling = new int[capacity];
+            move = new int[capacity];
+            proof = new int[capacity];
+            disproof = new int[capacity];
+            size = new int[capacity];
+            visited = new int[capacity];
+            for (int i = 0; i < capacity; i++) {
+                sibling[i] = i + 1 < capacity ? i + 1 : -1;
+                firstChild[i] = -1;
+            }
+            free = 0;
+        }
+
+        /**
+         * Search the position of the board until it is solved, the time is
+         * over, or the tree has a number of nodes
+         *
+         * @param nodeLimit The most nodes of the tree
+         * @param main True for the main tree, which collapses old nodes when the table is full
+         * @return The root of the tree, on the position of the board
+         */
+        int search(long nodeLimit, boolean main) {
+            int root = allocate();
+            parent[root] = -1;
+            move[root] = Move.NONE;
+            evaluate(root, false);
+            clock = 0;
+            while (proof[root] != 0 && disproof[root] != 0 && used < nodeLimit) {
+                if (main && System.nanoTime() > deadline) break;
+
+                // Go down to the position that helps the most
+                clock++;
+                int node = root;
+                visited[root] = clock;
+                while (firstChild[node] >= 0) {
+                    node = mostProving(node);
+                    visited[node] = clock;
+                    board.makeMove(move[node]);
+                }
+                if (free < 0 || capacity - used < MAX_MOVES) {
+                    if (!main || !collapse(root)) {
+                        undoLine(node, root);
+                        break;
+                    }
+                }
+                expand(node, main);
+
+                // Give the new numbers to every position of the line
+                while (true) {
+                    update(node, node == root);
+                    if (node == root) break;
+                    board.unmakeMove();
+                    node = parent[node];
+                }
+            }
+            return root;
+        }
+
+        /**
+         * Take back the moves of a line
+         *
+         * @param node The last position of the line
+         * @param root The first position of the line
+         */
+        private void undoLine(int node, int root) {
+            for (; node != root; node = parent[node]) {
+                board.unmakeMove();
+            }
+        }
+
+        /**
+         * Returns the child of a node on the way to the position that helps
+         * the most: the smallest proof number where the attacker moves, the
+         * smallest disproof number where the defender moves
+         *
+         * @param node The node
+         * @return The child
+         */
+        private int mostProving(int node) {
+            boolean attacker = board.whiteTurn == attackerWhite;
+            int best = -1;
+            int bestNumber = Integer.MAX_VALUE;
+            for (int child = firstChild[node]; child >= 0; child = sibling[child]) {
+                int number = attacker ? proof[child] : disproof[child];
+                if (number < bestNumber) {
+                    best = child;
+                    bestNumber = number;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Add the positions after every move of a position
+         *
+         * @param node The node of the position on the board
+         * @param main True for the main tree, the new positions get a small search with two levels
+         */
+        private void expand(int node, boolean main) {
+            MoveList moves = moveLists[board.undoCount()];
+            MoveGenerator.generateLegal(board, board.whiteTurn ? BoardState.WHITE : BoardState.BLACK, moves);
+            int last = -1;
+            for (int i = 0; i < moves.size; i++) {
+                int child = allocate();
+                parent[child] = node;
+                move[child] = moves.get(i);
+                if (last < 0) {
+                    firstChild[node] = child;
+                } else {
+                    sibling[last] = child;
+                }
+                last = child;
+                board.makeMove(moves.get(i));
+                evaluate(child, main && inner != null);
+                board.unmakeMove();
+            }
+        }
+
+        /**
+         * Give the first numbers to a new position
+         *
+         * @param node The node of the position on the board
+         * @param deeper True to give it a small search in the inner tree
+         */
+        private void evaluate(int node, boolean deeper) {
+            nodes++;
+            int result = board.result();
+            if (result == BoardState.ONGOING && tablebase != null && Long.bitCount(board.occupied()) <= tablebase.maxPieces()) {
+                result = tablebase.probe(board);
+            }
+            MoveList moves = moveLists[board.undoCount()];
+            if (result == BoardState.ONGOING) {
+                MoveGenerator.generateLegal(board, board.whiteTurn ? BoardState.WHITE : BoardState.BLACK, moves);
+                // A player that can not move ties the game
+                if (moves.isEmpty()) {
+                    result = BoardState.TIE;
+                }
+            }
+            if (result != BoardState.ONGOING) {
+                boolean won = result == (attackerWhite ? BoardState.WHITE_WINS : BoardState.BLACK_WINS);
+                proof[node] = won ? 0 : INFINITY;
+                disproof[node] = won ? INFINITY : 0;
+                size[node] = 1;
+                return;
+            }
+            if (deeper) {
+                // As many nodes as the main tree, so both levels grow together
+                int root = inner.search(Math.min(inner.capacity - MAX_MOVES, Math.max(2, used)), false);
+                proof[node] = inner.proof[root];
+                disproof[node] = inner.disproof[root];
+                size[node] = inner.size[root];
+                inner.release(root);
+                return;
+            }
+            // Fewer moves are easier to prove for the defender and to disprove for the attacker
+            boolean attacker = board.whiteTurn == attackerWhite;
+            proof[node] = attacker ? 1 : moves.size;
+            disproof[node] = attacker ? moves.size : 1;
+        }
+
+        /**
+         * Compute the numbers of an expanded node from its children
+         *
+         * @param node The node of the position on the board
+         * @param root True for the root, which keeps its children when it is solved
+         */
+        private void update(int node, boolean root) {
+            boolean attacker = board.whiteTurn == attackerWhite;
+            int min = INFINITY;
+            int sum = 0;
+            int minSize = Integer.MAX_VALUE;
+            int sumSize = 1;
+            for (int child = firstChild[node]; child >= 0; child = sibling[child]) {
+                int first = attacker ? proof[child] : disproof[child];
+                int second = attacker ? disproof[child] : proof[child];
+                min = Math.min(min, first);
+                sum = Math.min(INFINITY, sum + second);
+                if (first == 0) {
+                    minSize = Math.min(minSize, size[child]);
+                }
+                sumSize += size[child];
+            }
+            proof[node] = attacker ? min : sum;
+            disproof[node] = attacker ? sum : min;
+            if (min == 0) {
+                // One move solves the position
+                size[node] = 1 + minSize;
+            } else if (sum == 0) {
+                // Every move had to be solved
+                size[node] = sumSize;
+            } else {
+                return;
+            }
+            if (!root) {
+                releaseChildren(node);
+            }
+        }
+
+        /**
+         * Make room in the table: the older half of the nodes with children,
+         * by the last time they were visited, lose the nodes under them
+         *
+         * @param root The root of the tree
+         * @return True if there is room to expand a position
+         */
+        private boolean collapse(int root) {
+            // The times of the nodes with children, the oldest half of them is collapsed
+            int[] times = new int[used];
+            int count = 0;
+            for (int node = 0; node < capacity; node++) {
+                if (firstChild[node] >= 0 && node != root) {
+                    times[count++] = visited[node];
+                }
+            }
+            if (count == 0) {
+                return false;
+            }
+            Arrays.sort(times, 0, count);
+            int threshold = Math.min(times[count / 2], clock - 1);
+            collapseOlder(root, threshold);
+            return free >= 0 && capacity - used >= MAX_MOVES;
+        }
+
+        /**
+         * Collapse the nodes under a node visited at a time or before
+         *
+         * @param node The node
+         * @param threshold The time
+         */
+        private void collapseOlder(int node, int threshold) {
+            for (int child = firstChild[node]; child >= 0; child = sibling[child]) {
+                if (firstChild[child] < 0) continue;
+                if (visited[child] <= threshold) {
+                    releaseChildren(child);
+                } else {
+                    collapseOlder(child, threshold);
+                }
+            }
+        }
+
+        /**
+         * Returns a free node
+         *
+         * @return The node
+         */
+        private int allocate() {
+            int node = free;
+            free = sibling[node];
+            used++;
+            firstChild[node] = -1;
+            sibling[node] = -1;
+            visited[node] = clock;
+            return node;
+        }
+
+        /**
+         * Free a node and the nodes under it
+         *
+         * @param node The node
+         */
+        void release(int node) {
+            releaseChildren(node);
+            sibling[node] = free;
+            free = node;
+            used--;
+        }
+
+        /**
+         * Free the nodes under a node
+         *
+         * @param node The node
+         */
+        private void releaseChildren(int node) {
+            int child = firstChild[node];
+            firstChild[node] = -1;
+            while (child >= 0) {
+                int next = sibling[child];
+                release(child);
+                child = next;
+            }
+        }
+    }
+
+    /**
+     * Prove a position from the command line
+     *
+     * @param args The position, the seconds, the nodes of the table, PN for one level and E and the directory of the tables
+     * @throws IOException If the tables can not be read
+     */
+    public static void main(String args[]) throws IOException {
+        int count = args.length;
+        boolean twoLevels = true;
+        EndgameTablebase tablebase = null;
+        while (count > 1 && (args[count - 1].equals("PN") || args[count - 1].startsWith("E"))) {
+            if (args[count - 1].equals("PN")) {
+                twoLevels = false;
+            } else {
+                tablebase = new EndgameTablebase(Paths.get(args[count - 1].substring(1)));
+            }
+            count--;
+        }
+        BoardState board = new BoardState();
+        if (count == 0 || args[0].equalsIgnoreCase("START")) {
+            board.setUpBoard();
+        } else {
+            PositionNotation.parse(args[0], board);
+        }
+        long seconds = count > 1 ? Long.parseLong(args[1]) : 60;
+        int tableNodes = count > 2 ? Integer.parseInt(args[2]) : DEFAULT_TABLE_NODES;
+
+        ProofNumberSearch search = new ProofNumberSearch(tableNodes, twoLevels);
+        search.setTablebase(tablebase);
+        System.out.println("Proving a win of " + (board.whiteTurn ? "white" : "black") + " in " + PositionNotation.format(board)
+            + (twoLevels ? " with two levels" : " with one level"));
+        System.out.println(search.prove(board, seconds * 1000));
+    }
+}
@@ -0,0 +1,452 @@
+package com.github.frensi.notchess.engine;
+
+import com.github.frensi.notchess.BoardState;
+import com.github.frensi.notchess.Move;
+import com.github.frensi.notchess.MoveGenerator;
+import com.github.frensi.notchess.MoveList;
+
+/**
+ * Alpha-beta search for notchess. The search deepens one move at a time
+ * (iterative deepening) and uses negamax, so every score is from the point
+ * of view of the player that moves. The search stops at the maximum depth,
+ * or when the node budget is used up, and returns the best move of the last
+ * depth that was searched completely.
+ *
+ * The games end the same way as in notchess: losing all the pieces wins,
+ * after 50 moves each the player with the fewest pieces wins, and a player
+ * that can not move ties the game.
+ *
+ * The positions already searched are stored in a TranspositionTable, which
+ * gives the score without searching again, or at least the best move to try
+ * first. A Search object keeps its own buffers, so one object should be used
+ * by only one thread at a time, but the table can be shared (see
+ * ParallelSearch).
+ *
+ * At the end of the depth the search goes on with the captures only
+ * (quiescence search): a player that has to capture can not stop in the
+ * middle of a chain of captures, so only the position at its end is
+ * evaluated. A position with a single legal move, most often the only
+ * capture, does not use up depth.
+ *
+ * With an EndgameTablebase, the positions with few pieces get their exact
+ * result from the tables instead of being searched.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public class Search {
+
+    // Bigger than any score
+    public static final int INFINITY = 1_000_000;
+    // The score of winning the game right now
+    public static final int WIN = 100_000;
+    // The deepest position the search can reach
+    public static final int MAX_PLY = 128;
+
+    // The size of the table of a search created without one
+    public static final int DEFAULT_TABLE_MEGABYTES = 16;
+    // The most a chain of captures is expected to give back after a capture,
+    // a chain that can not reach alpha even with it is not searched
+    public static final int DELTA_MARGIN = 2 * Evaluation.PIECE;
+    // The most captures searched after the end of the depth, the position
+    // after them is evaluated even if the chain goes on
+    public static final int QUIESCE_PLIES = 6;
+
+    // The score of a position whose game is not known to be over
+    private static final int NOT_OVER = Integer.MIN_VALUE;
+
+    // The positions already searched
+    private final TranspositionTable table;
+    // The board searched, moves are made and taken back on it
+    private final BoardState board = new BoardState();
+    // One list of moves for each ply of the search
+    private final MoveList[] moveLists = new MoveList[MAX_PLY + 1];
+    // The number of positions visited
+    private long nodes;
+    // The maximum number of positions to visit
+    private long nodeLimit;
+    // Set when the node budget was used up or the search was stopped
+    private boolean stopped;
+    // Set by another thread to stop the search
+    private volatile boolean abort;
+    // The exact results of the positions with few pieces, or null
+    private EndgameTablebase tablebase;
+
+    /**
+     * Constructor of the search with its own table
+     */
+    public Search() {
+        this(TranspositionTable.ofMegabytes(DEFAULT_TABLE_MEGABYTES));
+    }
+
+    /**
+     * Constructor of the search
+     *
+     * @param table The table of positions already searched
+     */
+    public Search(TranspositionTable table) {
+        this.table = table;
+        for (int i = 0; i <= MAX_PLY; i++) {
+            moveLists[i] = new MoveList();
+        }
+    }
+
+    /**
+     * Use the tables of the positions with few pieces in the search
+     *
+     * @param tablebase The tables, or null to search every position
+     */
+    public void setTablebase(EndgameTablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * Search the best move of the player that has to move
+     *
+     * @param board The board of the game (it is not changed)
+     * @param maxDepth The maximum number of moves to look ahead
+     * @param nodeLimit The maximum number of positions to visit, or 0 for no limit
+     * @return The best move and its score
+     */
+    public SearchResult search(BoardState board, int maxDepth, long nodeLimit) {
+        table.newSearch();
+        abort = false;
+        return search(board, 1, maxDepth, nodeLimit, 0);
+    }
+
+    /**
+     * Search the best move starting from a given depth. The threads of a
+     * ParallelSearch use different first depths and root move orders so they
+     * do not all search the same positions at the same time.
+     *
+     * @param board The board of the game (it is not changed)
+     * @param firstDepth The first depth searched
+     * @param maxDepth The maximum number of moves to look ahead
+     * @param nodeLimit The maximum number of positions to visit, or 0 for no limit
+     * @param rootShift The number of places the root moves are rotated
+     * @return The best move and its score
+     */
+    SearchResult search(BoardState board, int firstDepth, int maxDepth, long nodeLimit, int rootShift) {
+        long start = System.nanoTime();
+        this.nodes = 0;
+        this.nodeLimit = nodeLimit <= 0 ? Long.MAX_VALUE : nodeLimit;
+        this.stopped = false;
+
+        this.board.copyFrom(board);
+        MoveList rootMoves = moveLists[0];
+        MoveGenerator.generateLegal(this.board, sideToMove(this.board), rootMoves);
+        if (rootMoves.isEmpty()) {
+            return new SearchResult(Move.NONE, 0, 0, 0, System.nanoTime() - start);
+        }
+        for (int i = 0; i < rootShift % rootMoves.size; i++) {
+            moveToFront(rootMoves, rootMoves.get(rootMoves.size - 1));
+        }
+
+        int bestMove = rootMoves.get(0);
+        int bestScore = 0;
+        int completedDepth = 0;
+        for (int depth = Math.max(1, firstDepth); depth <= Math.min(maxDepth, MAX_PLY); depth++) {
+            // Search the best move of the last depth first
+            moveToFront(rootMoves, bestMove);
+            int alpha = -INFINITY;
+            int iterationBest = bestMove;
+            for (int i = 0; i < rootMoves.size; i++) {
+                int move = rootMoves.get(i);
+                this.board.makeMove(move);
+                int score = -negamax(1, depth - 1, -INFINITY, -alpha);
+                this.board.unmakeMove();
+                if (stopped) break;
+                if (score > alpha) {
+                    alpha = score;
+                    iterationBest = move;
+                }
+            }
+            // A depth that was not finished is not used
+            if (stopped) break;
+            bestMove = iterationBest;
+            bestScore = alpha;
+            completedDepth = depth;
+            table.store(this.board.hash, bestMove, toTable(bestScore, 0), depth, TranspositionTable.EXACT);
+            // Looking deeper does not change a game that is already decided
+            if (Math.abs(bestScore) >= WIN - MAX_PLY) break;
+        }
+        return new SearchResult(bestMove, bestScore, completedDepth, nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * Stop the search from another thread. The search returns the best move
+     * of the last depth searched completely.
+     */
+    public void stop() {
+        abort = true;
+    }
+
+    /**
+     * Allow a search that was stopped to run again
+     */
+    void resume() {
+        abort = false;
+    }
+
+    /**
+     * Negamax search with alpha-beta pruning
+     *
+     * @param ply The number of moves from the start of the search
+     * @param depth The number of moves left to look ahead
+     * @param alpha The score the player that moves is already sure of
+     * @param beta The score the opponent is already sure of
+     * @return The score of the position
+     */
+    private int negamax(int ply, int depth, int alpha, int beta) {
+        if (depth <= 0) {
+            return quiesce(ply, 0, alpha, beta);
+        }
+        nodes++;
+        if (nodes >= nodeLimit || ((nodes & 1023) == 0 && abort)) {
+            stopped = true;
+            return 0;
+        }
+
+        // Check if the game finished
+        int over = overScore(ply);
+        if (over != NOT_OVER) {
+            return over;
+        }
+        if (ply >= MAX_PLY) {
+            return Evaluation.evaluate(board);
+        }
+
+        // Use the score of this position if it was already searched deep enough
+        long entry = table.probe(board.hash);
+        int tableMove = Move.NONE;
+        if (entry != 0L) {
+            tableMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        MoveList moves = moveLists[ply];
+        MoveGenerator.generateLegal(board, sideToMove(board), moves);
+        // A player that can not move ties the game
+        if (moves.isEmpty()) {
+            return 0;
+        }
+        // Try the best move found before first
+        if (tableMove != Move.NONE) {
+            moveToFront(moves, tableMove);
+        }
+        int originalAlpha = alpha;
+        int bestMove = Move.NONE;
+        // A move that has to be made is not a choice, so it does not use up depth
+        int nextDepth = moves.size == 1 ? depth : depth - 1;
+        for (int i = 0; i < moves.size; i++) {
+            board.makeMove(moves.get(i));
+            int score = -negamax(ply + 1, nextDepth, -beta, -alpha);
+            board.unmakeMove();
+            if (stopped) return 0;
+            if (score >= beta) {
+                table.store(board.hash, moves.get(i), toTable(score, ply), depth, TranspositionTable.LOWER);
+                return score;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestMove = moves.get(i);
+            }
+        }
+        int bound = alpha > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(board.hash, bestMove, toTable(alpha, ply), depth, bound);
+        return alpha;
+    }
+
+    /**
+     * Search the captures that have to be made before a position is
+     * evaluated. A player that does not have to capture is evaluated at once;
+     * a player that has to capture can not stand on the evaluation, so every
+     * capture is searched until the chain ends, or until QUIESCE_PLIES
+     * captures were made. The scores are kept in the table at depth 0, so a
+     * chain reached again by another order of moves is not searched again.
+     *
+     * @param ply The number of moves from the start of the search
+     * @param captures The number of captures searched after the end of the depth
+     * @param alpha The score the player that moves is already sure of
+     * @param beta The score the opponent is already sure of
+     * @return The score of the position
+     */
+    private int quiesce(int ply, int captures, int alpha, int beta) {
+        nodes++;
+        if (nodes >= nodeLimit || ((nodes & 1023) == 0 && abort)) {
+            stopped = true;
+            return 0;
+        }
+        int over = overScore(ply);
+        if (over != NOT_OVER) {
+            return over;
+        }
+        int side = sideToMove(board);
+        if (ply >= MAX_PLY || captures >= QUIESCE_PLIES || !board.captureForced(side)) {
+            return Evaluation.evaluate(board);
+        }
+
+        // Use the score of this chain if it was already searched
+        long entry = table.probe(board.hash);
+        int tableMove = Move.NONE;
+        if (entry != 0L) {
+            tableMove = TranspositionTable.move(entry);
+            int score = fromTable(TranspositionTable.score(entry), ply);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER && score >= beta)
+                    || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                return score;
+            }
+        }
+
+        // Every capture leaves the opponent one piece less, whichever piece it takes, so the
+        // pieces after the capture bound all the captures at once (delta pruning)
+        int afterCapture = (Long.bitCount(board.occupancy(1 - side)) - 1 - Long.bitCount(board.occupancy(side))) * Evaluation.PIECE;
+        if (afterCapture + DELTA_MARGIN <= alpha) {
+            return afterCapture + DELTA_MARGIN;
+        }
+
+        MoveList moves = moveLists[ply];
+        MoveGenerator.generateLegal(board, side, moves);
+        orderCaptures(moves, board.attacks(1 - side));
+        if (tableMove != Move.NONE) {
+            moveToFront(moves, tableMove);
+        }
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = Move.NONE;
+        for (int i = 0; i < moves.size; i++) {
+            board.makeMove(moves.get(i));
+            int score = -quiesce(ply + 1, captures + 1, -beta, -Math.max(alpha, best));
+            board.unmakeMove();
+            if (stopped) return 0;
+            if (score > best) {
+                best = score;
+                bestMove = moves.get(i);
+                if (best >= beta) break;
+            }
+        }
+        // Only an empty entry or one of the captures is replaced, a deeper entry of the position is worth more
+        if (entry == 0L || TranspositionTable.depth(entry) == 0) {
+            int bound = best >= beta ? TranspositionTable.LOWER
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+            table.store(board.hash, bestMove, toTable(best, ply), 0, bound);
+        }
+        return best;
+    }
+
+    /**
+     * Put first the captures that land where the opponent can take the
+     * piece back: the opponent then has to capture too, and the player
+     * that gives away its pieces is closer to winning
+     *
+     * @param moves The captures
+     * @param opponentAttacks The squares the opponent attacks
+     */
+    private static void orderCaptures(MoveList moves, long opponentAttacks) {
+        int front = 0;
+        for (int i = 0; i < moves.size; i++) {
+            int move = moves.moves[i];
+            if ((opponentAttacks & (1L << Move.to(move))) != 0) {
+                moves.moves[i] = moves.moves[front];
+                moves.moves[front++] = move;
+            }
+        }
+    }
+
+    /**
+     * Returns the score of a position whose game is over, or known from the
+     * tables
+     *
+     * @param ply The number of moves from the start of the search
+     * @return The score, or NOT_OVER if the game goes on
+     */
+    private int overScore(int ply) {
+        int result = board.result();
+        // The tables know how the games with few pieces end
+        if (result == BoardState.ONGOING && tablebase != null && Long.bitCount(board.occupied()) <= tablebase.maxPieces()) {
+            result = tablebase.probe(board);
+        }
+        return result == BoardState.ONGOING ? NOT_OVER : terminalScore(board, result, ply);
+    }
+
+    /**
+     * Convert a score to store in the table. The scores of won games count
+     * the moves from the start of the search, but the table needs the moves
+     * from the position stored.
+     *
+     * @param score The score from the start of the search
+     * @param ply The number of moves from the start of the search
+     * @return The score to store
+     */
+    static int toTable(int score, int ply) {
+        if (score >= WIN - MAX_PLY) return score + ply;
+        if (score <= -WIN + MAX_PLY) return score - ply;
+        return score;
+    }
+
+    /**
+     * Convert a score read from the table back to the current search
+     *
+     * @param score The score stored
+     * @param ply The number of moves from the start of the search
+     * @return The score from the start of the search
+     */
+    static int fromTable(int score, int ply) {
+        if (score >= WIN - MAX_PLY) return score - ply;
+        if (score <= -WIN + MAX_PLY) return score + ply;
+        return score;
+    }
+
+    /**
+     * Returns the score of a finished game for the player that has to move.
+     * Faster wins and slower losses score better.
+     *
+     * @param board The board of the game
+     * @param result The result of the game
+     * @param ply The number of moves from the start of the search
+     * @return The score
+     */
+    static int terminalScore(BoardState board, int result, int ply) {
+        if (result == BoardState.TIE) {
+            return 0;
+        }
+        boolean whiteWins = result == BoardState.WHITE_WINS;
+        return whiteWins == board.whiteTurn ? WIN - ply : -WIN + ply;
+    }
+
+    /**
+     * Returns the player that has to move
+     *
+     * @param board The board of the game
+     * @return BoardState.WHITE or BoardState.BLACK
+     */
+    static int sideToMove(BoardState board) {
+        return board.whiteTurn ? BoardState.WHITE : BoardState.BLACK;
+    }
+
+    /**
+     * Move a move to the start of the list
+     *
+     * @param moves The list of moves
+     * @param move The move to put first
+     */
+    static void moveToFront(MoveList moves, int move) {
+        for (int i = 0; i < moves.size; i++) {
+            if (moves.moves[i] == move) {
+                System.arraycopy(moves.moves, 0, moves.moves, 1, i);
+                moves.moves[0] = move;
+                return;
+            }
+        }
+    }
+}
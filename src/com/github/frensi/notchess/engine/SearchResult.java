@@ -0,0 +1,60 @@
+package com.github.frensi.notchess.engine;
+
+import com.github.frensi.notchess.Move;
+
+/**
+ * The result of a search: the best move found and its score
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public class SearchResult {
+
+    // The best move found (see Move), or Move.NONE if there are no legal moves
+    public final int bestMove;
+    // The score of the best move for the player that moves
+    public final int score;
+    // The last depth that was searched completely
+    public final int depth;
+    // The number of positions visited
+    public final long nodes;
+    // The time used by the search
+    public final long nanos;
+
+    /**
+     * Constructor of the result
+     *
+     * @param bestMove The best move found
+     * @param score The score of the best move
+     * @param depth The last depth searched completely
+     * @param nodes The number of positions visited
+     * @param nanos The time used in nanoseconds
+     */
+    public SearchResult(int bestMove, int score, int depth, long nodes, long nanos) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Returns the number of positions visited per second
+     *
+     * @return The nodes per second
+     */
+    public long nodesPerSecond() {
+        return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+    }
+
+    /**
+     * Returns the result as text
+     *
+     * @return The text of the result
+     */
+    @Override
+    public String toString() {
+        String moveText = bestMove == Move.NONE ? "none" : Move.toString(bestMove);
+        return "move " + moveText + " score " + score + " depth " + depth + " nodes " + nodes + " nps " + nodesPerSecond();
+    }
+}
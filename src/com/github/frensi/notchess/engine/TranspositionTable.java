@@ -0,0 +1,182 @@
+package com.github.frensi.notchess.engine;
+
+import java.util.Arrays;
+
+import com.github.frensi.notchess.Move;
+
+/**
+ * A table of positions already searched, indexed by their Zobrist hash. The
+ * same position is reached by many move orders (even more in notchess, where
+ * captures are forced), so the search can reuse the score and the best move
+ * found the first time.
+ *
+ * Each entry is two longs in one array: the hash XOR the data, and the data.
+ * The table has no locks, so threads can share it. If two threads write the
+ * same entry at the same time, the two longs can come from different writes;
+ * then the hash XOR the data does not give back the hash of the position and
+ * the entry is ignored (the XOR trick of Hyatt and Mann).
+ *
+ * The data of an entry packs the best move (21 bits), the bound (2 bits), the
+ * depth (8 bits), the age (8 bits) and the score (24 bits). When two positions
+ * use the same entry, the one searched deeper is kept, unless the stored one
+ * is from an older search.
+ *
+ * @author Frensi Angjo
+ * @version Spring 2023
+ */
+public class TranspositionTable {
+
+    // The kinds of score stored
+    public static final int EXACT = 0;
+    // The real score is this score or higher (the search stopped at beta)
+    public static final int LOWER = 1;
+    // The real score is this score or lower (no move reached alpha)
+    public static final int UPPER = 2;
+
+    // The bits of the data of an entry
+    private static final int MOVE_BITS = 21;
+    private static final int BOUND_SHIFT = 21;
+    private static final int DEPTH_SHIFT = 23;
+    private static final int AGE_SHIFT = 31;
+    private static final int SCORE_SHIFT = 40;
+
+    // The entries: the hash XOR the data followed by the data
+    private final long[] table;
+    // The entries minus one, to find the entry of a hash
+    private final int mask;
+    // Incremented by every new search so old entries can be replaced
+    private int age;
+
+    /**
+     * Constructor of a table with a number of entries
+     *
+     * @param entries The number of entries, rounded down to a power of two
+     */
+    public TranspositionTable(int entries) {
+        if (entries < 1) {
+            throw new IllegalArgumentException("The table needs at least one entry");
+        }
+        int size = Integer.highestOneBit(entries);
+        this.table = new long[size * 2];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Create a table that uses about a number of megabytes
+     *
+     * @param megabytes The memory used by the table
+     * @return The table
+     */
+    public static TranspositionTable ofMegabytes(int megabytes) {
+        return new TranspositionTable(Math.max(1, megabytes) * (1 << 20) / 16);
+    }
+
+    /**
+     * Start a new search: the entries of the old searches are replaced first
+     */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    /**
+     * Remove all the entries
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+    }
+
+    /**
+     * Find the data stored for a position
+     *
+     * @param hash The hash of the position
+     * @return The data of the entry, or 0 if the position is not stored
+     */
+    public long probe(long hash) {
+        int index = ((int)hash & mask) * 2;
+        long data = table[index + 1];
+        if ((table[index] ^ data) != hash) {
+            return 0L;
+        }
+        return data;
+    }
+
+    /**
+     * Store the result of searching a position
+     *
+     * @param hash The hash of the position
+     * @param move The best move (see Move), or Move.NONE
+     * @param score The score of the position
+     * @param depth The depth searched
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long hash, int move, int score, int depth, int bound) {
+        int index = ((int)hash & mask) * 2;
+        long old = table[index + 1];
+        boolean samePosition = (table[index] ^ old) == hash;
+        // Keep the entry searched deeper, unless it is from an older search
+        if (old != 0L && !samePosition && age(old) == age && depth(old) > depth) {
+            return;
+        }
+        // Keep the best move already known if this search did not find one
+        if (move == Move.NONE && samePosition) {
+            move = move(old);
+        }
+        long data = (move & ((1L << MOVE_BITS) - 1))
+            | ((long)bound << BOUND_SHIFT)
+            | ((long)Math.min(depth, 0xFF) << DEPTH_SHIFT)
+            | ((long)age << AGE_SHIFT)
+            | ((long)score << SCORE_SHIFT);
+        table[index] = hash ^ data;
+        table[index + 1] = data;
+    }
+
+    /**
+     * Returns the best move of an entry
+     *
+     * @param data The data of the entry
+     * @return The move, or Move.NONE
+     */
+    public static int move(long data) {
+        return (int)(data & ((1L << MOVE_BITS) - 1));
+    }
+
+    /**
+     * Returns the score of an entry
+     *
+     * @param data The data of the entry
+     * @return The score
+     */
+    public static int score(long data) {
+        return (int)(data >> SCORE_SHIFT);
+    }
+
+    /**
+     * Returns the depth searched of an entry
+     *
+     * @param data The data of the entry
+     * @return The depth
+     */
+    public static int depth(long data) {
+        return (int)(data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Returns the kind of score of an entry
+     *
+     * @param data The data of the entry
+     * @return EXACT, LOWER or UPPER
+     */
+    public static int bound(long data) {
+        return (int)(data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    /**
+     * Returns the search that stored an entry
+     *
+     * @param data The data of the entry
+     * @return The age
+     */
+    private static int age(long data) {
+        return (int)(data >>> AGE_SHIFT) & 0xFF;
+    }
+}
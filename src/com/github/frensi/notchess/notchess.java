@@ -6,14 +6,13 @@ import java.awt.GridLayout;
 import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.concurrent.TimeUnit;
+import java.util.Arrays;
+import java.util.Map;
 
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
@@ -24,6 +23,11 @@ import javax.swing.JTextArea;
 import javax.swing.SwingConstants;
 import javax.swing.UIManager;
 
+import com.github.frensi.notchess.engine.EndgameTablebase;
+import com.github.frensi.notchess.engine.MonteCarloSearch;
+import com.github.frensi.notchess.engine.ParallelSearch;
+import com.github.frensi.notchess.engine.ProofNumberSearch;
+import com.github.frensi.notchess.engine.Search;
 import com.github.frensi.notchess.pieces.Bishop;
 import com.github.frensi.notchess.pieces.King;
 import com.github.frensi.notchess.pieces.Knight;
@@ -41,35 +45,72 @@ public class notchess extends ThreadGraphicsController implements ActionListener
 
 	// Store the buttons
 	protected ChessButton[][] buttonMatrix = new ChessButton[8][8];
-	// The label that shows the moves
-	protected static JLabel moveLabel;
+	// The label that shows the moves (each game has its own so games can run at the same time)
+	protected JLabel moveLabel;
 	// TextArea to enter moves by text
 	protected JTextArea enterMoveText;
 	// Button to submit move entered by text
 	protected JButton submitMove;
 	// Store the curent move
-	protected static String move;
+	protected String move;
 	// The arraylist of white pieces
 	protected ArrayList<ChessPiece> whiteChessPieces;
 	// The array of black pieces
 	protected ArrayList<ChessPiece> blackChessPieces;
-	// Store which players has to move 
-	protected boolean whiteTurn = true;
-	// The number of moves left until the game ends
-	protected int movesLeft;
+	// The piece on each square (square = row * 8 + col), or null, kept the same as the positions of the pieces
+	protected ChessPiece[] pieceIndex = new ChessPiece[64];
+	// The state of the game (pieces, which player has to move and moves left)
+	protected BoardState board = new BoardState();
+	// The images of the pieces, indexed like the bitboards of the board
+	protected static ImageIcon[] pieceIcons = new ImageIcon[12];
+	// Load the images once, every game and every new piece uses the same ones
+	static {
+		String[] names = {"pawn", "knight", "bishop", "rook", "queen", "king"};
+		for (int i = 0; i < 12; i++) {
+			String color = BoardState.colorOf(i) == BoardState.WHITE ? "white" : "black";
+			pieceIcons[i] = new ImageIcon("images/" + color + "_" + names[BoardState.typeOf(i)] + ".png");
+		}
+	}
+	// Reusable list to store the legal moves of the pc
+	protected MoveList legalMoves = new MoveList();
 	// Store if player is playing against pc
 	protected static boolean pcPlayer;
+	// The number of moves the pc looks ahead, or 0 to make random moves
+	protected static int searchDepth = 0;
+	// The number of threads searching for the pc
+	protected static int searchThreads = 1;
+	// Run the search threads in a ForkJoinPool instead of platform threads
+	protected static boolean searchForkJoin = false;
+	// The size of the table of positions of each search
+	protected static int searchTableMegabytes = Search.DEFAULT_TABLE_MEGABYTES;
+	// The search used by the pc (created the first time it is needed)
+	protected ParallelSearch search;
+	// The milliseconds of the Monte-Carlo search of each move of the pc, or 0 to not use it
+	protected static long mctsMillis = 0;
+	// The Monte-Carlo search used by the pc (created the first time it is needed)
+	protected MonteCarloSearch mcts;
+	// The pause of the servers before their moves, given to every new game
+	protected static MovePacing serverPacing = MovePacing.TWO_SECONDS;
+	// The pause of this game before the moves of the server
+	protected MovePacing pacing = serverPacing;
+	// The journal where the moves of the games are written, or null
+	protected static GameJournal serverJournal;
+	// The journal of this game and the number of the game in it
+	protected GameJournal journal = serverJournal;
+	protected int gameId = journal == null ? 0 : journal.newGame();
+	// The book of the first moves of the pc, or null to always search
+	protected static OpeningBook openingBook;
+	// The tables of the endings with few pieces, or null to always search
+	protected static EndgameTablebase endgameTablebase;
 
 	// Store connection details for client
-	protected DataOutputStream outToServer;
-    protected BufferedReader inFromServer;
+	protected MoveProtocol serverConnection;
 	// Store if game is client or server
     static boolean client = false;
     static boolean server = false;
 
 	// Store connection details for server
-    protected DataOutputStream outToClient;
-    protected BufferedReader inFromClient;
+    protected MoveProtocol clientConnection;
 	// Store game results for server to send to client
     protected String finishgame = null;
 	// Check for server if it si client turn
@@ -184,56 +225,158 @@ public class notchess extends ThreadGraphicsController implements ActionListener
 	 * Method to set up the board every time that a game ends
 	 */
 	public void setUpBoard() {
-		// Make all button names empty and remove the iconds
-		for (int i = 0; i < 8; i++) {
-			for (int j = 0; j < 8; j++) {
-				buttonMatrix[i][j].setName("");
-				buttonMatrix[i][j].setIcon(null);
-			}
-		}
+		// Remove all the pieces from the board (white starts and there are 50 moves until game ends)
+		board.clear();
 		// Initiate new arraylists
 		whiteChessPieces = new ArrayList<ChessPiece>();
 		blackChessPieces = new ArrayList<ChessPiece>();
 
 		// Create the white pieces
-		whiteChessPieces.add(new King(Color.white, new Point(7, 4), new ImageIcon("images/white_king.png"), buttonMatrix));
-		whiteChessPieces.add(new Pawn(Color.white, new Point(6, 0), new ImageIcon("images/white_pawn.png"), buttonMatrix));
-		whiteChessPieces.add(new Pawn(Color.white, new Point(6,1), new ImageIcon("images/white_pawn.png"), buttonMatrix));
-		whiteChessPieces.add(new Pawn(Color.white, new Point(6,2), new ImageIcon("images/white_pawn.png"), buttonMatrix));
-		whiteChessPieces.add(new Pawn(Color.white, new Point(6, 3), new ImageIcon("images/white_pawn.png"), buttonMatrix));
-		whiteChessPieces.add(new Pawn(Color.white, new Point(6, 4), new ImageIcon("images/white_pawn.png"), buttonMatrix));
-		whiteChessPieces.add(new Pawn(Color.white, new Point(6, 5), new ImageIcon("images/white_pawn.png"), buttonMatrix));
-		whiteChessPieces.add(new Pawn(Color.white, new Point(6, 6), new ImageIcon("images/white_pawn.png"), buttonMatrix));
-		whiteChessPieces.add(new Pawn(Color.white, new Point(6, 7), new ImageIcon("images/white_pawn.png"), buttonMatrix));
-		whiteChessPieces.add(new Rook(Color.white, new Point(7, 0), new ImageIcon("images/white_rook.png"), buttonMatrix));
-		whiteChessPieces.add(new Rook(Color.white, new Point(7, 7), new ImageIcon("images/white_rook.png"), buttonMatrix));
-		whiteChessPieces.add(new Bishop(Color.white, new Point(7, 2), new ImageIcon("images/white_bishop.png"), buttonMatrix));
-		whiteChessPieces.add(new Bishop(Color.white, new Point(7, 5), new ImageIcon("images/white_bishop.png"), buttonMatrix));
-		whiteChessPieces.add(new Knight(Color.white, new Point(7, 1), new ImageIcon("images/white_knight.png"), buttonMatrix));
-		whiteChessPieces.add(new Knight(Color.white, new Point(7, 6), new ImageIcon("images/white_knight.png"), buttonMatrix));
-		whiteChessPieces.add(new Queen(Color.white, new Point(7, 3), new ImageIcon("images/white_queen.png"), buttonMatrix));
+		whiteChessPieces.add(new King(Color.white, new Point(7, 4), icon(BoardState.WHITE, BoardState.KING), board));
+		whiteChessPieces.add(new Pawn(Color.white, new Point(6, 0), icon(BoardState.WHITE, BoardState.PAWN), board));
+		whiteChessPieces.add(new Pawn(Color.white, new Point(6,1), icon(BoardState.WHITE, BoardState.PAWN), board));
+		whiteChessPieces.add(new Pawn(Color.white, new Point(6,2), icon(BoardState.WHITE, BoardState.PAWN), board));
+		whiteChessPieces.add(new Pawn(Color.white, new Point(6, 3), icon(BoardState.WHITE, BoardState.PAWN), board));
+		whiteChessPieces.add(new Pawn(Color.white, new Point(6, 4), icon(BoardState.WHITE, BoardState.PAWN), board));
+		whiteChessPieces.add(new Pawn(Color.white, new Point(6, 5), icon(BoardState.WHITE, BoardState.PAWN), board));
+		whiteChessPieces.add(new Pawn(Color.white, new Point(6, 6), icon(BoardState.WHITE, BoardState.PAWN), board));
+		whiteChessPieces.add(new Pawn(Color.white, new Point(6, 7), icon(BoardState.WHITE, BoardState.PAWN), board));
+		whiteChessPieces.add(new Rook(Color.white, new Point(7, 0), icon(BoardState.WHITE, BoardState.ROOK), board));
+		whiteChessPieces.add(new Rook(Color.white, new Point(7, 7), icon(BoardState.WHITE, BoardState.ROOK), board));
+		whiteChessPieces.add(new Bishop(Color.white, new Point(7, 2), icon(BoardState.WHITE, BoardState.BISHOP), board));
+		whiteChessPieces.add(new Bishop(Color.white, new Point(7, 5), icon(BoardState.WHITE, BoardState.BISHOP), board));
+		whiteChessPieces.add(new Knight(Color.white, new Point(7, 1), icon(BoardState.WHITE, BoardState.KNIGHT), board));
+		whiteChessPieces.add(new Knight(Color.white, new Point(7, 6), icon(BoardState.WHITE, BoardState.KNIGHT), board));
+		whiteChessPieces.add(new Queen(Color.white, new Point(7, 3), icon(BoardState.WHITE, BoardState.QUEEN), board));
 
 		// Create the black pieces
-		blackChessPieces.add(new King(Color.black, new Point(0, 4), new ImageIcon("images/black_king.png"), buttonMatrix));
-		blackChessPieces.add(new Pawn(Color.black, new Point(1, 0), new ImageIcon("images/black_pawn.png"), buttonMatrix));
-		blackChessPieces.add(new Pawn(Color.black, new Point(1, 1), new ImageIcon("images/black_pawn.png"), buttonMatrix));
-		blackChessPieces.add(new Pawn(Color.black, new Point(1, 2), new ImageIcon("images/black_pawn.png"), buttonMatrix));
-		blackChessPieces.add(new Pawn(Color.black, new Point(1, 3), new ImageIcon("images/black_pawn.png"), buttonMatrix));
-		blackChessPieces.add(new Pawn(Color.black, new Point(1, 4), new ImageIcon("images/black_pawn.png"), buttonMatrix));
-		blackChessPieces.add(new Pawn(Color.black, new Point(1, 5), new ImageIcon("images/black_pawn.png"), buttonMatrix));
-		blackChessPieces.add(new Pawn(Color.black, new Point(1, 6), new ImageIcon("images/black_pawn.png"), buttonMatrix));
-		blackChessPieces.add(new Pawn(Color.black, new Point(1, 7), new ImageIcon("images/black_pawn.png"), buttonMatrix));
-		blackChessPieces.add(new Rook(Color.black, new Point(0, 0), new ImageIcon("images/black_rook.png"),buttonMatrix));
-		blackChessPieces.add(new Rook(Color.black, new Point(0, 7), new ImageIcon("images/black_rook.png"),buttonMatrix));
-		blackChessPieces.add(new Bishop(Color.black, new Point(0, 2), new ImageIcon("images/black_bishop.png"), buttonMatrix));
-		blackChessPieces.add(new Bishop(Color.black, new Point(0, 5),new ImageIcon("images/black_bishop.png"),  buttonMatrix));
-		blackChessPieces.add(new Knight(Color.black, new Point(0, 1), new ImageIcon("images/black_knight.png"), buttonMatrix));
-		blackChessPieces.add(new Knight(Color.black, new Point(0, 6), new ImageIcon("images/black_knight.png"), buttonMatrix));
-		blackChessPieces.add(new Queen(Color.black, new Point(0, 3), new ImageIcon("images/black_queen.png"), buttonMatrix));
-		// White player always starts
-		whiteTurn = true;
-		// 50 moves until game ends
-		movesLeft = 50;
+		blackChessPieces.add(new King(Color.black, new Point(0, 4), icon(BoardState.BLACK, BoardState.KING), board));
+		blackChessPieces.add(new Pawn(Color.black, new Point(1, 0), icon(BoardState.BLACK, BoardState.PAWN), board));
+		blackChessPieces.add(new Pawn(Color.black, new Point(1, 1), icon(BoardState.BLACK, BoardState.PAWN), board));
+		blackChessPieces.add(new Pawn(Color.black, new Point(1, 2), icon(BoardState.BLACK, BoardState.PAWN), board));
+		blackChessPieces.add(new Pawn(Color.black, new Point(1, 3), icon(BoardState.BLACK, BoardState.PAWN), board));
+		blackChessPieces.add(new Pawn(Color.black, new Point(1, 4), icon(BoardState.BLACK, BoardState.PAWN), board));
+		blackChessPieces.add(new Pawn(Color.black, new Point(1, 5), icon(BoardState.BLACK, BoardState.PAWN), board));
+		blackChessPieces.add(new Pawn(Color.black, new Point(1, 6), icon(BoardState.BLACK, BoardState.PAWN), board));
+		blackChessPieces.add(new Pawn(Color.black, new Point(1, 7), icon(BoardState.BLACK, BoardState.PAWN), board));
+		blackChessPieces.add(new Rook(Color.black, new Point(0, 0), icon(BoardState.BLACK, BoardState.ROOK), board));
+		blackChessPieces.add(new Rook(Color.black, new Point(0, 7), icon(BoardState.BLACK, BoardState.ROOK), board));
+		blackChessPieces.add(new Bishop(Color.black, new Point(0, 2), icon(BoardState.BLACK, BoardState.BISHOP), board));
+		blackChessPieces.add(new Bishop(Color.black, new Point(0, 5),icon(BoardState.BLACK, BoardState.BISHOP), board));
+		blackChessPieces.add(new Knight(Color.black, new Point(0, 1), icon(BoardState.BLACK, BoardState.KNIGHT), board));
+		blackChessPieces.add(new Knight(Color.black, new Point(0, 6), icon(BoardState.BLACK, BoardState.KNIGHT), board));
+		blackChessPieces.add(new Queen(Color.black, new Point(0, 3), icon(BoardState.BLACK, BoardState.QUEEN), board));
+		// Store each piece on its square
+		indexPieces();
+		// Show the pieces on the buttons
+		updateButtons();
+	}
+
+	/**
+	 * Set up the pieces of a position written as text (see PositionNotation),
+	 * to go on with a game that was saved
+	 * 
+	 * @param position The text of the position
+	 */
+	public void setUpBoard(String position) {
+		BoardState saved = new BoardState();
+		PositionNotation.parse(position, saved);
+		board.clear();
+		whiteChessPieces = new ArrayList<ChessPiece>();
+		blackChessPieces = new ArrayList<ChessPiece>();
+		for (int square = 0; square < 64; square++) {
+			int piece = saved.pieceAt(square);
+			if (piece == BoardState.EMPTY) continue;
+			int color = BoardState.colorOf(piece);
+			int type = BoardState.typeOf(piece);
+			Color pieceColor = color == BoardState.WHITE ? Color.white : Color.black;
+			Point point = new Point(square / 8, square % 8);
+			ImageIcon image = icon(color, type);
+			ChessPiece c;
+			switch (type) {
+				case BoardState.PAWN: c = new Pawn(pieceColor, point, image, board); break;
+				case BoardState.KNIGHT: c = new Knight(pieceColor, point, image, board); break;
+				case BoardState.BISHOP: c = new Bishop(pieceColor, point, image, board); break;
+				case BoardState.ROOK: c = new Rook(pieceColor, point, image, board); break;
+				case BoardState.QUEEN: c = new Queen(pieceColor, point, image, board); break;
+				default: c = new King(pieceColor, point, image, board); break;
+			}
+			(color == BoardState.WHITE ? whiteChessPieces : blackChessPieces).add(c);
+		}
+		// The pieces are already on the board, this also sets the player that moves and the moves left
+		board.setPosition(saved.bitboards, saved.whiteTurn, saved.movesLeft);
+		// Store each piece on its square
+		indexPieces();
+		// Show the pieces on the buttons
+		updateButtons();
+	}
+
+	/**
+	 * Returns the position of the game as text (see PositionNotation)
+	 * 
+	 * @return The text of the position
+	 */
+	public String position() {
+		return PositionNotation.format(board);
+	}
+
+	/**
+	 * Store each piece of the arraylists in the square index
+	 */
+	protected void indexPieces() {
+		Arrays.fill(pieceIndex, null);
+		for (ChessPiece c : whiteChessPieces) {
+			pieceIndex[BoardState.square(c.position.x, c.position.y)] = c;
+		}
+		for (ChessPiece c : blackChessPieces) {
+			pieceIndex[BoardState.square(c.position.x, c.position.y)] = c;
+		}
+	}
+
+	/**
+	 * Returns the piece on a button of the matrix
+	 * 
+	 * @param row The row of the button
+	 * @param col The column of the button
+	 * @return The piece, or null if there is no piece or the button is outside the board
+	 */
+	protected ChessPiece pieceAt(int row, int col) {
+		if (row < 0 || row > 7 || col < 0 || col > 7) return null;
+		return pieceIndex[BoardState.square(row, col)];
+	}
+
+	/**
+	 * Returns the image of a piece
+	 * 
+	 * @param color The color of the piece (BoardState.WHITE or BoardState.BLACK)
+	 * @param type The type of the piece
+	 * @return The image
+	 */
+	protected static ImageIcon icon(int color, int type) {
+		return pieceIcons[BoardState.piece(color, type)];
+	}
+
+	/**
+	 * Show the pieces stored in the board on the buttons
+	 */
+	public void updateButtons() {
+		// There are no buttons if the graphics were not built
+		if (buttonMatrix[0][0] == null) return;
+		for (int i = 0; i < 8; i++) {
+			for (int j = 0; j < 8; j++) {
+				int piece = board.pieceAt(BoardState.square(i, j));
+				// Make the button name empty and remove the icon if there is no piece
+				if (piece == BoardState.EMPTY) {
+					buttonMatrix[i][j].setName("");
+					buttonMatrix[i][j].setIcon(null);
+				} else {
+					int type = BoardState.typeOf(piece);
+					buttonMatrix[i][j].setName(BoardState.PIECE_NAMES.substring(type, type+1));
+					buttonMatrix[i][j].setForeground(BoardState.colorOf(piece) == BoardState.WHITE ? Color.white : Color.black);
+					buttonMatrix[i][j].setIcon(pieceIcons[piece]);
+				}
+			}
+		}
 	}
 
 	/**
@@ -267,58 +410,29 @@ public class notchess extends ThreadGraphicsController implements ActionListener
 
 		// First button pressed
 		if (move.length() == 3) return;		
-		// if (pcPlayer && !whiteTurn) return;
+		// if (pcPlayer && !board.whiteTurn) return;
 		doAndValidateMove();
 	}
 
 	/**
-	 * Checks if the move is valid and makes the move
+	 * Checks if the move entered as text is valid and makes the move
 	 */
 	public void doAndValidateMove(){
+		doAndValidateMove(Move.parse(move, board));
+	}
+
+	/**
+	 * Checks if the move is valid and makes the move
+	 * 
+	 * @param pieceMove The move to make (see Move)
+	 */
+	public void doAndValidateMove(int pieceMove){
 		// Stores if the move to make was found
 		boolean found = false;
+		// Stores if there is any forced move to make (the board keeps the attacks of every piece)
+		boolean foundForcedMove = board.captureForced(board.whiteTurn ? BoardState.WHITE : BoardState.BLACK);
 		// Stores if the move made is forced
-		boolean isForcedMove = false;
-		// Stores if there is any forced move to make
-		boolean foundForcedMove = false;
-		// Stores the possible forced moves
-		ArrayList<String> possibleMoves = new ArrayList<String>();
-		if (whiteTurn) {
-			// Check if there is a piece that you have to capture
-			for (ChessPiece c : whiteChessPieces) {
-				possibleMoves = c.canCapture();
-				// Check if there are forced moves to make
-				if (!possibleMoves.isEmpty()) {
-					foundForcedMove = true;
-					// Check each forced move
-					for (String s : possibleMoves) {
-						// Check if forced move is the move made
-						if (s.equals(move)) {
-							isForcedMove = true;
-							break;
-						} 
-					}
-				}
-			}
-		} else {
-			// Check if there is a piece that you have to capture
-			for (ChessPiece c : blackChessPieces) {
-				possibleMoves = c.canCapture();
-				// Check if there are forced moves to make
-				if (!possibleMoves.isEmpty()) {
-					foundForcedMove = true;
-					// Check each forced move
-					for (String s : possibleMoves) {
-						// Check if forced move is the move made
-						if (s.equals(move)) {
-							isForcedMove = true;
-							break;
-						} 
-					}
-				}
-			}
-
-		}
+		boolean isForcedMove = board.isCapture(pieceMove);
 		// If the move is not one of the forced moves
 		if (foundForcedMove && !isForcedMove) {
 			moveLabel.setText("Move: NEED TO CAPTURE");
@@ -330,84 +444,65 @@ public class notchess extends ThreadGraphicsController implements ActionListener
 			return;
 		}
 
-		if (whiteTurn) {
-			for (ChessPiece c : whiteChessPieces) {
-				// Check if the piece was moved
-				if (c.validMove(move)){
-					// Move the piece and show in the label
-					c.move(move);
-					moveLabel.setText("Move: " + move);
-
-					int newRow = Character.getNumericValue(move.charAt(4)) - 1;
-					int newCol = (int)(move.charAt(3) - 65);
-					Point position = new Point(7-newRow, newCol);
-
-					// Check if any piece was captured
-					for (int count = 0; count < blackChessPieces.size(); count++) {
-						if (blackChessPieces.get(count).position.equals(position)) {
-							blackChessPieces.remove(count);
-						}
-					}
-
-					// Promote pawn if necessary
-					if (move.charAt(0) == 'P' && move.charAt(4) == '8') {
-						whiteChessPieces.remove(c);
-						whiteChessPieces.add(new Queen(Color.white, position, new ImageIcon("images/white_queen.png"), buttonMatrix));
-					}
-
-					found = true;
-					whiteTurn = false;
-					break;
+		if (board.whiteTurn) {
+			// Only the piece on the square where the move starts can make it
+			ChessPiece c = pieceIndex[Move.from(pieceMove)];
+			if (c != null && c.color.equals(Color.white) && c.validMove(pieceMove)) {
+				// Move the piece and show in the label
+				c.move(pieceMove);
+				moveLabel.setText("Move: " + move);
+
+				int newSquare = Move.to(pieceMove);
+				// Check if any piece was captured
+				if (pieceIndex[newSquare] != null) {
+					blackChessPieces.remove(pieceIndex[newSquare]);
 				}
+				pieceIndex[Move.from(pieceMove)] = null;
+				pieceIndex[newSquare] = c;
+
+				// Promote pawn if necessary
+				if (Move.isPromotion(pieceMove)) {
+					whiteChessPieces.remove(c);
+					pieceIndex[newSquare] = new Queen(Color.white, c.position, icon(BoardState.WHITE, BoardState.QUEEN), board);
+					whiteChessPieces.add(pieceIndex[newSquare]);
+				}
+
+				found = true;
+				board.endTurn();
 			}
 		} else {
-			for (ChessPiece c : blackChessPieces) {
-				// Check if the piece was moved
-				if (c.validMove(move)){
-					// Move the piece and show in the label
-					c.move(move);
-					moveLabel.setText("Move: " + move);
-
-					int newRow = Character.getNumericValue(move.charAt(4)) - 1;
-					int newCol = (int)(move.charAt(3) - 65);
-					Point position = new Point(7-newRow, newCol);
-
-					// Check if any piece was captured
-					for (int count = 0; count < whiteChessPieces.size(); count++) {
-						if (whiteChessPieces.get(count).position.equals(position)) {
-							whiteChessPieces.remove(count);
-						}
-					}
-
-					// Promote pawn if necessary
-					if (move.charAt(0) == 'P' && move.charAt(4) == '1') {
-						blackChessPieces.remove(c);
-						blackChessPieces.add(new Queen(Color.black, position, new ImageIcon("images/black_queen.png"), buttonMatrix));
-					}
-
-					found = true;
-					whiteTurn = true;
-					movesLeft--;
-					// Check if the players made 50 moves
-					if (movesLeft == 0) {
-						if (whiteChessPieces.size() > blackChessPieces.size()) {
-							moveLabel.setText("BLACK WINS");
-							finishgame = "BLACK WINS";
-							setUpBoard();
-						} else if (blackChessPieces.size() < blackChessPieces.size()) {
-							moveLabel.setText("WHITE WINS");
-							finishgame = "WHITE WINS";
-							setUpBoard();
-						} else {
-							moveLabel.setText("TIE GAME");
-							finishgame = "TIE GAME";
-							setUpBoard();
-						}
-					}
-					break;
+			// Only the piece on the square where the move starts can make it
+			ChessPiece c = pieceIndex[Move.from(pieceMove)];
+			if (c != null && c.color.equals(Color.black) && c.validMove(pieceMove)) {
+				// Move the piece and show in the label
+				c.move(pieceMove);
+				moveLabel.setText("Move: " + move);
+
+				int newSquare = Move.to(pieceMove);
+				// Check if any piece was captured
+				if (pieceIndex[newSquare] != null) {
+					whiteChessPieces.remove(pieceIndex[newSquare]);
 				}
+				pieceIndex[Move.from(pieceMove)] = null;
+				pieceIndex[newSquare] = c;
+
+				// Promote pawn if necessary
+				if (Move.isPromotion(pieceMove)) {
+					blackChessPieces.remove(c);
+					pieceIndex[newSquare] = new Queen(Color.black, c.position, icon(BoardState.BLACK, BoardState.QUEEN), board);
+					blackChessPieces.add(pieceIndex[newSquare]);
+				}
+
+				found = true;
+				board.endTurn();
 			}
 		}
+		// Write the move in the journal, it reaches the disk with the moves of the other games
+		if (found && journal != null) {
+			journal.move(gameId, pieceMove);
+		}
+		// Show the new position of the pieces
+		updateButtons();
 		// If move was not made, show invalid move in label
 		if (!found) {
 			moveLabel.setText("Move: Invalid Move");
@@ -417,102 +512,71 @@ public class notchess extends ThreadGraphicsController implements ActionListener
 			}
 		}
 		
-		// Check if anyone won
-		if (whiteChessPieces.size() == 0) {
-			moveLabel.setText("BLACK WINS");
-			finishgame = "BLACK WINS";
-			setUpBoard();
-		} else if (blackChessPieces.size() == 0) {
-			moveLabel.setText("WHITE WINS");
-			finishgame = "WHITE WINS";
-			setUpBoard();
-		}
+		// Check if anyone lost all the pieces or if the players made 50 moves
+		int result = board.result();
 		// Check if there is any possible move for the player (blocked pawn)
-		if(!canMove()) {
-			moveLabel.setText("TIE GAME");
-			finishgame = "TIE GAME";
+		if (result == BoardState.ONGOING && !canMove()) {
+			result = BoardState.TIE;
+		}
+		if (result != BoardState.ONGOING) {
+			finishgame = BoardState.RESULT_NAMES[result];
+			moveLabel.setText(finishgame);
+			endJournal(result);
 			setUpBoard();
 		}
 		prevMove = move;
 		move = null;
 		// Call pc to make move if playing against pc
 		if (!client && !server) {
-			if (pcPlayer && !whiteTurn) pcMove();
+			if (pcPlayer && !board.whiteTurn) pcMove();
+		}
+	}
+
+	/**
+	 * Write the end of the game in the journal, the next game gets a new number
+	 * 
+	 * @param result The result (see BoardState.result), or ONGOING if the game was left
+	 */
+	protected void endJournal(int result) {
+		if (journal != null) {
+			journal.end(gameId, result);
+			gameId = journal.newGame();
+		}
+	}
+
+	/**
+	 * Make the moves of a game of the journal from the start, so the game
+	 * goes on from where it was. The moves are not written again.
+	 * 
+	 * @param id The number of the game in the journal
+	 * @param moves The moves (see Move)
+	 * @return True if every move was valid
+	 */
+	public boolean replay(int id, MoveList moves) {
+		GameJournal gameJournal = journal;
+		journal = null;
+		setUpBoard();
+		finishgame = null;
+		boolean valid = true;
+		for (int i = 0; i < moves.size && valid; i++) {
+			boolean whiteTurn = board.whiteTurn;
+			doAndValidateMove(moves.get(i));
+			// A move that was not made leaves the same player to move
+			valid = board.whiteTurn != whiteTurn || finishgame != null;
 		}
+		journal = gameJournal;
+		gameId = id;
+		return valid;
 	}
 
 	/**
-	 * Check if the player has possible moves to make
+	 * Check if the player that has to move can make any legal move. A
+	 * player whose pieces are all blocked ties the game.
 	 * 
 	 * @return True if the player can make a move, false otherwise
 	 */
 	public boolean canMove(){
-		boolean result = false;
-		// Check which players move is
-		if (whiteTurn) {
-			// Check for each piece if there are more possible moves
-			for (ChessPiece c : whiteChessPieces) {
-				// If the piece is not pawn, then there are possible moves
-				if (!(c instanceof Pawn)) {
-					return true;
-				}
-				// The positin that blocks the pawn
-				Point positionBlocking = new Point(c.position.x-1, c.position.y);
-				// The positions where the pawn can capture
-				Point positionCaptureLeft = new Point(c.position.x-1, c.position.y-1);
-				Point positionCaptureRight = new Point(c.position.x-1, c.position.y+1);
-				boolean foundPieceBlocking = false;
-				// Check each opponent pieces if they block the pawn
-				for (ChessPiece cb : blackChessPieces) {
-					// Check if the pawn can capture
-					if (cb.position.equals(positionCaptureLeft) || cb.position.equals(positionCaptureRight)) {
-						foundPieceBlocking = false;
-						break;
-					}
-					// Check if the piece block the pawn 
-					if (cb.position.equals(positionBlocking)) {
-						foundPieceBlocking = true;
-					}
-				}
-				// Change the return result to true if the pawn can move
-				if (!foundPieceBlocking) {
-					result = true;
-					break;
-				}
-			}
-		} else {
-			// Check for each piece if there are more possible moves
-			for (ChessPiece c : blackChessPieces) {
-				// If the piece is not pawn, then there are possible moves
-				if (!(c instanceof Pawn)) {
-					return true;
-				}
-				// The positin that blocks the pawn
-				Point positionBlocking = new Point(c.position.x+1, c.position.y);
-				// The positions where the pawn can capture
-				Point positionCaptureLeft = new Point(c.position.x+1, c.position.y-1);
-				Point positionCaptureRight = new Point(c.position.x+1, c.position.y+1);
-				// Check each opponent pieces if they block the pawn
-				boolean foundPieceBlocking = false;
-				for (ChessPiece cb : whiteChessPieces) {
-					// Check if the pawn can capture
-					if (cb.position.equals(positionCaptureLeft) || cb.position.equals(positionCaptureRight)) {
-						foundPieceBlocking = false;
-						break;
-					}
-					// Check if the piece block the pawn 
-					if (cb.position.equals(positionBlocking)) {
-						foundPieceBlocking = true;
-					}
-				}
-				// Change the return result to true if the pawn can move
-				if (!foundPieceBlocking) {
-					result = true;
-					break;
-				}
-			}
-		}
-		return result;
+		return MoveGenerator.hasLegalMove(board, board.whiteTurn ? BoardState.WHITE : BoardState.BLACK);
 	}
 
 	/**
@@ -523,7 +587,7 @@ public class notchess extends ThreadGraphicsController implements ActionListener
 		if (server && finishgame != null) {
 			try {
 				// Send game results to client
-				outToClient.writeBytes(finishgame + "\n");
+				clientConnection.send(finishgame);
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
@@ -534,7 +598,7 @@ public class notchess extends ThreadGraphicsController implements ActionListener
 		if (clientTurn && clientInvalidMove != null) {
 			try {
 				// Send the message that was invalid or needs to capture
-				outToClient.writeBytes(clientInvalidMove + '\n');
+				clientConnection.send(clientInvalidMove);
 			} catch (IOException e1) {
 				e1.printStackTrace();
 			}
@@ -543,49 +607,45 @@ public class notchess extends ThreadGraphicsController implements ActionListener
 			return;
 		}
 
-		boolean foundMove = false;
-		// Loop until the pc found a move
-		while (!foundMove) {
-			ChessPiece c;
-			if (!client) {
-                // Iterate each piece to check for forced moves
-                for (ChessPiece forced : blackChessPieces) {
-                    ArrayList<String> forcedMoves = forced.canCapture();
-                    // If there are forced moves, choose one randomly
-                    if (!forcedMoves.isEmpty()) {
-                        move = forcedMoves.get((int)(Math.random() * forcedMoves.size()));
-						foundMove = true;
-                    }
-                }
-                // Choose a piece randomly
-                c = blackChessPieces.get((int)(Math.random() * blackChessPieces.size()));
-            } else {
-                // Iterate each piece to check for forced moves
-                for (ChessPiece forced : whiteChessPieces) {
-                    ArrayList<String> forcedMoves = forced.canCapture();
-                    // If there are forced moves, choose one randomly
-                    if (!forcedMoves.isEmpty()) {
-                        move = forcedMoves.get((int)(Math.random() * forcedMoves.size()));
-                        foundMove = true;
-                    }
-                }
-                // Choose a piece randomly
-                c = whiteChessPieces.get((int)(Math.random() * whiteChessPieces.size()));
-            }
-			if (foundMove) break;
-
-			// Get the move
-			String pcMove = c.pcMove();
-			// If the move is not valid, try again
-			if (!c.validMove(pcMove)) continue;
-			move = pcMove;
-			foundMove = true;
+		// Generate every legal move of the pc
+		MoveGenerator.generateLegal(board, client ? BoardState.WHITE : BoardState.BLACK, legalMoves);
+		if (legalMoves.isEmpty()) {
+			// No move can be made if every piece is blocked
+			return;
 		}
+		// Play the first moves from the book if the position is in it
+		int pieceMove = openingBook == null ? Move.NONE : openingBook.probe(board);
+		// Play the last moves from the tables if few pieces are left
+		if (pieceMove == Move.NONE && endgameTablebase != null) {
+			pieceMove = endgameTablebase.bestMove(board);
+		}
+		if (pieceMove != Move.NONE) {
+			// The move of the book or of the tables, no search is needed
+		} else if (mctsMillis > 0) {
+			// Play random games from the position for some time and choose the move tried most
+			if (mcts == null) {
+				mcts = new MonteCarloSearch(searchThreads);
+			}
+			pieceMove = mcts.search(board, mctsMillis).bestMove;
+		} else if (searchDepth > 0 || pacing.nodeLimit() > 0) {
+			// Search the best move, as deep as the positions of the pacing allow if there is no depth
+			if (search == null) {
+				search = new ParallelSearch(searchThreads, searchForkJoin, searchTableMegabytes);
+				search.setTablebase(endgameTablebase);
+			}
+			int depth = searchDepth > 0 ? searchDepth : Search.MAX_PLY;
+			pieceMove = search.search(board, depth, pacing.nodeLimit()).bestMove;
+		} else {
+			// Choose a move randomly
+			pieceMove = legalMoves.get((int)(Math.random() * legalMoves.size));
+		}
+		// The text of the move to show and to send
+		move = Move.toString(pieceMove);
 		// Check if the cient is sending a move
 		if (client) {
 			try {
 				// Send move to server
-				outToServer.writeBytes(move + '\n');
+				serverConnection.send(move);
 			} catch (IOException e1) {
 				e1.printStackTrace();
 			}
@@ -594,19 +654,113 @@ public class notchess extends ThreadGraphicsController implements ActionListener
 		if (server) {
 			try {
 				// Send move to client
-				outToClient.writeBytes(move + '\n');
+				clientConnection.send(move);
 			} catch (IOException e1) {
 				e1.printStackTrace();
 			}
 		}
 		// Make your move
-		doAndValidateMove();
+		doAndValidateMove(pieceMove);
+	}
+
+	/**
+	 * Read the options of the search that follow the type of game
+	 * 
+	 * @param args The command line arguments
+	 */
+	protected static void searchOptions(String args[]) throws IOException {
+		int count = args.length;
+		// The pause of the server (P followed by the pacing, see MovePacing.parse), the journal
+		// (J followed by the file), the opening book (B followed by the file) and the endgame tables
+		// (E followed by their directory) can be given last
+		while (count > 1 && (args[count - 1].startsWith("P") || args[count - 1].startsWith("J")
+				|| args[count - 1].startsWith("B") || args[count - 1].startsWith("E"))) {
+			String option = args[count - 1];
+			if (option.startsWith("P")) {
+				serverPacing = MovePacing.parse(option.substring(1));
+			} else if (option.startsWith("J")) {
+				// Only the games of the servers are written, a game on the screen has nothing to recover
+				if (!server) {
+					System.err.println("The journal (J) can only be used by the servers S, M and V");
+					System.exit(1);
+				}
+				openJournal(option.substring(1));
+			} else if (option.startsWith("B")) {
+				openingBook = new OpeningBook(Paths.get(option.substring(1)));
+			} else {
+				endgameTablebase = new EndgameTablebase(Paths.get(option.substring(1)));
+			}
+			count--;
+		}
+		// U followed by milliseconds instead of the depth uses the Monte-Carlo search
+		if (count > 1 && args[1].startsWith("U")) {
+			mctsMillis = Long.parseLong(args[1].substring(1));
+		} else if (count > 1) {
+			searchDepth = Integer.parseInt(args[1]);
+		}
+		if (count > 2) searchThreads = Integer.parseInt(args[2]);
+		if (count > 3) searchForkJoin = args[3].equals("F");
+	}
+
+	/**
+	 * Open the journal of the games of the server, written as the file or as
+	 * the milliseconds between writes to the disk, a colon and the file. The
+	 * games that did not end when the server stopped are replayed and shown,
+	 * and written as left, because their clients are gone. Then the file is
+	 * emptied, because all its games ended.
+	 * 
+	 * @param option The option of the journal
+	 */
+	protected static void openJournal(String option) throws IOException {
+		int syncMillis = GameJournal.DEFAULT_SYNC_MILLIS;
+		String file = option;
+		int colon = option.indexOf(':');
+		if (colon > 0 && option.substring(0, colon).chars().allMatch(Character::isDigit)) {
+			syncMillis = Integer.parseInt(option.substring(0, colon));
+			file = option.substring(colon + 1);
+		}
+		GameJournal gameJournal = new GameJournal(Paths.get(file), syncMillis);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				gameJournal.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}));
+		notchess game = new notchess();
+		game.moveLabel = new JLabel();
+		for (Map.Entry<Integer, MoveList> unfinished : gameJournal.unfinished().entrySet()) {
+			boolean valid = game.replay(unfinished.getKey(), unfinished.getValue());
+			System.out.println("Unfinished game " + unfinished.getKey() + ": " + unfinished.getValue().size + " moves"
+				+ (valid ? ", " + (game.board.whiteTurn ? "white" : "black") + " to move, "
+				+ game.board.movesLeft + " moves left" : ", not valid"));
+			gameJournal.end(unfinished.getKey(), BoardState.ONGOING);
+		}
+		// Every game in the file ended, the new games start an empty file
+		gameJournal.compact();
+		serverJournal = gameJournal;
 	}
 
 	/**
 	 * The main method that runs the program
 	 * 
 	 * @param args H to play against human, C to play against pc, S to be server, C to be client + IP to connect
+	 *             (+ TEXT to send the moves as text instead of binary).
+	 *             C and S can be followed by the number of moves the pc looks ahead (random moves if missing),
+	 *             the number of search threads and F to run the threads in a ForkJoinPool.
+	 *             The servers (S, M and V) can end with P and the pause before their moves: P0 for none,
+	 *             P2000 for two seconds (the default), P500-3000 for a random pause, or PN and a number of
+	 *             positions to search instead of waiting. They can also end with J and the file of the
+	 *             journal where the moves of the games are written (see openJournal).
+	 *             C and the servers can end with B and the file of an opening book, to play the first
+	 *             moves from it instead of searching (see OpeningBook), and with E and the directory of
+	 *             the endgame tables, to play the positions with few pieces from them (see EndgameGenerator).
+	 *             R plays the pc against itself without graphics (see SelfPlayRunner).
+	 *             M is a server without graphics for many clients at the same time (see GameServer),
+	 *             followed by the same search options as S. V is the same server with a virtual thread
+	 *             for each client (see VirtualThreadServer).
+	 *             W proves or disproves that the player that moves in a position can force a win, followed
+	 *             by the position as text (see ProofNumberSearch).
 	 */
 	public static void main(String args[]) throws Exception{
 		
@@ -625,19 +779,47 @@ public class notchess extends ThreadGraphicsController implements ActionListener
 			}
 			if (args[0].equals("C")) {
 				pcPlayer = true;
+				searchOptions(args);
 				// construct our object and have its run method invoked to
 		        // set up the GUI once its thread is ready
 				javax.swing.SwingUtilities.invokeLater(new notchess());
 			}
 			if (args[0].equals("S")) {
                 server = true;
+                searchOptions(args);
                 ServerChess server = new ServerChess();
                 server.start();
             }
             if (args[0].equals("T")) {
                 client = true;
                 ClientChess client = new ClientChess();
-                client.start(args[1]);
+                // TEXT after the IP talks to the servers that only know the old text protocol
+                client.start(args[1], !(args.length > 2 && args[2].equals("TEXT")));
+            }
+            if (args[0].equals("M")) {
+                server = true;
+                searchOptions(args);
+                // The games already run in parallel, so each search uses one thread and a small table
+                searchThreads = 1;
+                searchTableMegabytes = 1;
+                GameServer gameServer = new GameServer(GameServer.PORT, Runtime.getRuntime().availableProcessors());
+                gameServer.run();
+            }
+            if (args[0].equals("V")) {
+                server = true;
+                searchOptions(args);
+                searchThreads = 1;
+                searchTableMegabytes = 1;
+                VirtualThreadServer threadServer = new VirtualThreadServer(GameServer.PORT);
+                threadServer.run();
+            }
+            if (args[0].equals("R")) {
+                // Play games of the pc against itself without graphics
+                SelfPlayRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            }
+            if (args[0].equals("W")) {
+                // Prove a win from a position without graphics
+                ProofNumberSearch.main(Arrays.copyOfRange(args, 1, args.length));
             }
 		}
 
@@ -699,13 +881,32 @@ class ServerChess extends notchess {
 		// Make the connection
         welcomeSocket = new ServerSocket(3074);
         clientSocket = welcomeSocket.accept();
-        inFromClient = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-        outToClient = new DataOutputStream(clientSocket.getOutputStream());
-		// Send initial message
-		outToClient.writeBytes("Please Move\n");
+        play(clientSocket);
+    }
+
+	/**
+	 * Play a game against the client of a connection until it ends
+	 * 
+	 * @param socket The connection to the client
+	 */
+    public void play(Socket socket) throws Exception {
+		// Send initial message and find the protocol of the client
+        clientConnection = MoveProtocol.accept(socket);
+        try {
+            playMoves();
+        } finally {
+			// A game that did not end was left by the client
+            if (finishgame == null) endJournal(BoardState.ONGOING);
+        }
+    }
+
+	/**
+	 * Answer the moves of the client until the game ends or the client leaves
+	 */
+    private void playMoves() throws Exception {
         while(true)  {
 			// Receive move from client
-            move = inFromClient.readLine();
+            move = clientConnection.receive();
 			clientTurn = true;
 			// Check in message was null
             if (move == null) break;
@@ -715,15 +916,15 @@ class ServerChess extends notchess {
 			if (server && finishgame != null) {
 				try {
 					// Send game results to client
-					outToClient.writeBytes(finishgame + "\n");
+					clientConnection.send(finishgame);
 				} catch (IOException e) {
 					e.printStackTrace();
 				}
 				return;
 			}
 
-			// Wait two seconds for the server move
-			TimeUnit.SECONDS.sleep(2);
+			// Wait for the server move, unless it only has to tell that the move was invalid
+			if (clientInvalidMove == null) pacing.await();
 			// Make servere move 
             pcMove();
         }
@@ -739,20 +940,15 @@ class ClientChess extends notchess {
 	 * Method to start the client
 	 * 
 	 * @param ip The ip to connect
+	 * @param binary True to send the moves in binary, false to send them as text
 	 */
-    public void start(String ip) throws Exception {
+    public void start(String ip, boolean binary) throws Exception {
 		// Start the graphics of the game
         thisTGC.run();
 		// Make the connection
         Socket clientSocket = new Socket(ip, 3074);
-        outToServer = new DataOutputStream(clientSocket.getOutputStream());
-        inFromServer = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-		String start = inFromServer.readLine();
-
 		// Wait for the server to send the initial message
-		while (!start.equals("Please Move")) {
-			start = inFromServer.readLine();
-		}
+        serverConnection = MoveProtocol.connect(clientSocket, binary);
 		// Store if the server said that the move is invalid
 		boolean invalidMove = false;
 		
@@ -760,7 +956,7 @@ class ClientChess extends notchess {
 			// Make the move
             pcMove();
 			// Receive input from server
-            String serverInput = inFromServer.readLine();
+            String serverInput = serverConnection.receive();
 			// Check if input is invalid
 			if (serverInput.equals("INVALID MOVE") || serverInput.equals("NEED TO CAPTURE")) {
 				moveLabel.setText(prevMove + " Need human judge");